@@ -0,0 +1,139 @@
+package com.badoualy.stepperindicator;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Watches the frame intervals during the transitions of a {@link StepperIndicator} and adapts the quality of its
+ * animations.
+ * <p>
+ * The quality is degraded by one level when a transition drops too many frames, and restored by one level after a
+ * few transitions in a row without any dropped frame.
+ * </p>
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class AnimationQualityMonitor implements Choreographer.FrameCallback {
+
+    interface Callback {
+
+        /**
+         * @param quality new {@code StepperIndicator.ANIMATION_QUALITY_*} level
+         */
+        void onAnimationQualityChanged(int quality);
+    }
+
+    /**
+     * A frame taking more than this number of frame intervals is considered dropped
+     */
+    private static final float DROPPED_FRAME_RATIO = 1.5f;
+    /**
+     * Dropped frames during a transition before degrading the quality
+     */
+    private static final int DROPPED_FRAMES_TO_DEGRADE = 3;
+    /**
+     * Transitions in a row without dropped frames before restoring the quality
+     */
+    private static final int HEALTHY_TRANSITIONS_TO_RECOVER = 3;
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private final Callback callback;
+
+    private int quality = StepperIndicator.ANIMATION_QUALITY_FULL;
+    private long droppedFrameThresholdNanos = (long) (DEFAULT_FRAME_INTERVAL_NANOS * DROPPED_FRAME_RATIO);
+
+    private boolean monitoring;
+    private long lastFrameTimeNanos;
+    private int droppedFrames;
+    private boolean degradedDuringTransition;
+    private int healthyTransitions;
+
+    AnimationQualityMonitor(Callback callback) {
+        this.callback = callback;
+    }
+
+    int getQuality() {
+        return quality;
+    }
+
+    /**
+     * @param refreshRate refresh rate of the display, in frames per second
+     */
+    void setRefreshRate(float refreshRate) {
+        final long frameIntervalNanos = refreshRate > 0 ? (long) (1000000000L / refreshRate)
+                : DEFAULT_FRAME_INTERVAL_NANOS;
+        droppedFrameThresholdNanos = (long) (frameIntervalNanos * DROPPED_FRAME_RATIO);
+    }
+
+    /**
+     * Start watching the frames of a transition.
+     */
+    void onTransitionStart() {
+        if (monitoring) {
+            return;
+        }
+        monitoring = true;
+        lastFrameTimeNanos = 0;
+        droppedFrames = 0;
+        degradedDuringTransition = false;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stop watching the frames, a cancelled transition does not count toward recovery.
+     *
+     * @param cancelled {@code true} if the transition was cancelled before its end
+     */
+    void onTransitionEnd(boolean cancelled) {
+        if (!monitoring) {
+            return;
+        }
+        monitoring = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+
+        if (cancelled || droppedFrames > 0 || degradedDuringTransition) {
+            healthyTransitions = 0;
+        } else if (++healthyTransitions >= HEALTHY_TRANSITIONS_TO_RECOVER &&
+                quality > StepperIndicator.ANIMATION_QUALITY_FULL) {
+            healthyTransitions = 0;
+            setQuality(quality - 1);
+        }
+    }
+
+    /**
+     * Stop watching and restore the full quality.
+     */
+    void reset() {
+        if (monitoring) {
+            monitoring = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        healthyTransitions = 0;
+        if (quality != StepperIndicator.ANIMATION_QUALITY_FULL) {
+            setQuality(StepperIndicator.ANIMATION_QUALITY_FULL);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!monitoring) {
+            return;
+        }
+
+        if (lastFrameTimeNanos != 0 && frameTimeNanos - lastFrameTimeNanos > droppedFrameThresholdNanos &&
+                ++droppedFrames >= DROPPED_FRAMES_TO_DEGRADE) {
+            droppedFrames = 0;
+            if (quality < StepperIndicator.ANIMATION_QUALITY_MINIMAL) {
+                degradedDuringTransition = true;
+                setQuality(quality + 1);
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void setQuality(int quality) {
+        this.quality = quality;
+        callback.onAnimationQualityChanged(quality);
+    }
+}
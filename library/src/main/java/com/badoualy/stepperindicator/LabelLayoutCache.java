@@ -0,0 +1,643 @@
+package com.badoualy.stepperindicator;
+
+import android.support.annotation.Nullable;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded cache of the label layouts of a {@link StepperIndicator}.
+ * <p>
+ * Labels are fetched from the {@link StepperIndicator.LabelProvider} and laid out only when first needed, the least
+ * recently used layouts are dropped once the capacity is reached. All the layouts share the same width.
+ * </p>
+ * <p>
+ * Many labels laid out at once are split across a small pool of worker threads, each one using its own copy of the
+ * label paint, kept for the next layouts.
+ * </p>
+ * <p>
+ * The layouts can be retained across a configuration change with {@link #retain(String)}, taken by the cache of the
+ * recreated view with {@link #takeRetained(String)}, and picked up with {@link #restore()} when the labels are laid out
+ * with the same width and text size.
+ * </p>
+ */
+final class LabelLayoutCache {
+
+    private static final int MIN_CAPACITY = 32;
+
+    /**
+     * Min number of labels laid out by each thread, below that the labels are laid out on the calling thread only
+     */
+    private static final int MIN_LABELS_PER_THREAD = 32;
+    /**
+     * Worker threads, in addition to the calling thread. Shared by every indicator, idle threads are released.
+     */
+    private static final int WORKER_COUNT = Math.min(3, Runtime.getRuntime().availableProcessors() - 1);
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Max number of views whose layouts are retained at once
+     */
+    private static final int RETAINED_CAPACITY = 4;
+    /**
+     * Layouts retained across a configuration change, by key. Only used from the main thread.
+     */
+    private static final LinkedHashMap<String, Retained> retained =
+            new LinkedHashMap<String, Retained>(RETAINED_CAPACITY, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Retained> eldest) {
+                    return size() > RETAINED_CAPACITY;
+                }
+            };
+
+    private final TextPaint paint;
+    private StepperIndicator.LabelProvider provider;
+    private int width;
+    /**
+     * Max number of lines of the layouts created since the last {@link #clear()}
+     */
+    private int maxLineCount;
+
+    private final LayoutLru layouts = new LayoutLru(MIN_CAPACITY);
+    /**
+     * Layouts taken from {@link #retained}, until restored
+     */
+    private Retained taken;
+
+    /**
+     * Copies of the label paint used by the worker threads, created when first needed
+     */
+    private final TextPaint[] workerPaints = new TextPaint[Math.max(0, WORKER_COUNT)];
+    /**
+     * Labels to lay out and their layouts, reused by each {@link #layout(int, int, BitSet)}, grown when needed
+     */
+    private CharSequence[] pendingLabels = new CharSequence[MIN_CAPACITY];
+    private StaticLayout[] pendingLayouts = new StaticLayout[MIN_CAPACITY];
+
+    LabelLayoutCache(TextPaint paint) {
+        this.paint = paint;
+    }
+
+    @Nullable
+    StepperIndicator.LabelProvider getProvider() {
+        return provider;
+    }
+
+    void setProvider(@Nullable StepperIndicator.LabelProvider provider) {
+        this.provider = provider;
+        clear();
+    }
+
+    /**
+     * @param width width of the labels
+     * @return {@code true} if the width changed, dropping every layout
+     */
+    boolean setWidth(int width) {
+        if (this.width == width) {
+            return false;
+        }
+        this.width = width;
+        clear();
+        return true;
+    }
+
+    /**
+     * Bound the cache to the given number of layouts, so that the steps drawn together don't evict each other. When
+     * fewer steps are drawn together, the least recently used layouts beyond the new bound are dropped.
+     *
+     * @param count number of layouts used together
+     */
+    void setCapacity(int count) {
+        layouts.setCapacity(Math.max(MIN_CAPACITY, count));
+    }
+
+    /**
+     * @param step step position
+     * @return the layout of the label of the step, laid out if not cached, or {@code null} if the step has no label
+     */
+    @Nullable
+    StaticLayout get(int step) {
+        if (provider == null || width <= 0) {
+            return null;
+        }
+        StaticLayout layout = layouts.get(step);
+        if (layout == null) {
+            final CharSequence label = provider.getLabel(step);
+            if (label == null) {
+                return null;
+            }
+            layout = new StaticLayout(label, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, false);
+            layouts.put(step, layout);
+            maxLineCount = Math.max(maxLineCount, layout.getLineCount());
+        }
+        return layout;
+    }
+
+    /**
+     * Lay out the labels of the given steps which are not cached yet, in parallel if there are enough of them. Blocks
+     * until every label is laid out.
+     *
+     * @param firstStep    first step position (inclusive)
+     * @param lastStep     last step position (inclusive)
+     * @param laidOutSteps filled with the steps whose label was laid out
+     */
+    void layout(int firstStep, int lastStep, BitSet laidOutSteps) {
+        if (provider == null || width <= 0 || lastStep < firstStep) {
+            return;
+        }
+
+        final int length = lastStep - firstStep + 1;
+        if (pendingLabels.length < length) {
+            pendingLabels = new CharSequence[length];
+            pendingLayouts = new StaticLayout[length];
+        }
+        final CharSequence[] labels = pendingLabels;
+        final StaticLayout[] results = pendingLayouts;
+
+        // Labels are fetched on the calling thread, the provider does not need to be thread-safe
+        int count = 0;
+        for (int step = firstStep; step <= lastStep; step++) {
+            if (!layouts.containsKey(step)) {
+                labels[step - firstStep] = provider.getLabel(step);
+                if (labels[step - firstStep] != null) {
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        try {
+            final int threadCount = Math.min(WORKER_COUNT + 1, count / MIN_LABELS_PER_THREAD);
+            if (threadCount <= 1) {
+                layout(labels, results, 0, length, paint, width);
+            } else {
+                layoutInParallel(labels, results, length, threadCount);
+            }
+
+            // Publish the layouts, and reduce their max number of lines
+            for (int i = 0; i < length; i++) {
+                if (results[i] != null) {
+                    layouts.put(firstStep + i, results[i]);
+                    laidOutSteps.set(firstStep + i);
+                    maxLineCount = Math.max(maxLineCount, results[i].getLineCount());
+                }
+            }
+        } finally {
+            // The buffers must not keep the labels and layouts alive
+            Arrays.fill(labels, 0, length, null);
+            Arrays.fill(results, 0, length, null);
+        }
+    }
+
+    private void layoutInParallel(CharSequence[] labels, StaticLayout[] results, int length, int threadCount) {
+        final int chunkSize = (length + threadCount - 1) / threadCount;
+        final CountDownLatch done = new CountDownLatch(threadCount - 1);
+        final Throwable[] error = new Throwable[1];
+        final ThreadPoolExecutor executor = getExecutor();
+        for (int i = 1; i < threadCount; i++) {
+            final int from = i * chunkSize;
+            final int to = Math.min(length, from + chunkSize);
+            executor.execute(new LayoutTask(labels, results, from, to, getWorkerPaint(i - 1), width, done, error));
+        }
+
+        // First chunk on the calling thread meanwhile
+        layout(labels, results, 0, Math.min(length, chunkSize), paint, width);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (error) {
+            if (error[0] != null) {
+                throw new RuntimeException("Failed to lay out the labels", error[0]);
+            }
+        }
+    }
+
+    /**
+     * @param worker index of the worker, each worker has its own paint: paints are not thread-safe
+     */
+    private TextPaint getWorkerPaint(int worker) {
+        if (workerPaints[worker] == null) {
+            workerPaints[worker] = new TextPaint(paint);
+        }
+        return workerPaints[worker];
+    }
+
+    private static void layout(CharSequence[] labels, StaticLayout[] results, int from, int to, TextPaint paint,
+                               int width) {
+        for (int i = from; i < to; i++) {
+            if (labels[i] != null) {
+                results[i] = new StaticLayout(labels[i], paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, false);
+            }
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 1, TimeUnit.SECONDS,
+                                              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "StepperIndicator-labels-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Apply the changes of the label paint (color, anti-aliasing) to the worker paints, and to the layouts created
+     * with a copy of it.
+     */
+    void syncPaints() {
+        for (TextPaint workerPaint : workerPaints) {
+            if (workerPaint != null) {
+                workerPaint.set(paint);
+            }
+        }
+        for (LayoutLru.Entry entry = layouts.eldest(); entry != null; entry = layouts.newer(entry)) {
+            final TextPaint layoutPaint = entry.layout.getPaint();
+            if (layoutPaint != paint && !isWorkerPaint(layoutPaint)) {
+                // Restored from another view
+                layoutPaint.set(paint);
+            }
+        }
+    }
+
+    private boolean isWorkerPaint(TextPaint layoutPaint) {
+        for (TextPaint workerPaint : workerPaints) {
+            if (workerPaint == layoutPaint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop the layout of the step, it will be laid out again from the provider when needed.
+     *
+     * @param step step position
+     */
+    void remove(int step) {
+        layouts.remove(step);
+    }
+
+    /**
+     * Move the layouts of the steps after an inserted or removed step, so that they are kept.
+     *
+     * @param fromStep first step to move
+     * @param offset   offset to move the steps by: {@code 1} after an insertion, {@code -1} after a removal
+     */
+    void shift(int fromStep, int offset) {
+        layouts.shift(fromStep, offset);
+    }
+
+    /**
+     * Compare the cached labels with the ones of the provider, and drop the layouts of the labels which changed.
+     *
+     * @param changedSteps filled with the steps whose label changed
+     */
+    void refresh(BitSet changedSteps) {
+        if (provider == null) {
+            return;
+        }
+        LayoutLru.Entry entry = layouts.eldest();
+        while (entry != null) {
+            final LayoutLru.Entry next = layouts.newer(entry);
+            if (!TextUtils.equals(entry.layout.getText(), provider.getLabel(entry.step))) {
+                layouts.remove(entry.step);
+                changedSteps.set(entry.step);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * @return max number of lines of the layouts created since the last {@link #clear()}
+     */
+    int getMaxLineCount() {
+        return maxLineCount;
+    }
+
+    /**
+     * Compute the max number of lines again from the cached layouts only, so that it can shrink.
+     *
+     * @return max number of lines of the cached layouts
+     */
+    int computeMaxLineCount() {
+        maxLineCount = 0;
+        for (LayoutLru.Entry entry = layouts.eldest(); entry != null; entry = layouts.newer(entry)) {
+            maxLineCount = Math.max(maxLineCount, entry.layout.getLineCount());
+        }
+        return maxLineCount;
+    }
+
+    void clear() {
+        layouts.clear();
+        maxLineCount = 0;
+    }
+
+    /**
+     * Keep the current layouts under the given key, until restored or evicted by the layouts of other views.
+     * <p>
+     * Only the layouts of plain text labels are kept: the layouts reference their text, the spans of a styled label
+     * may reference anything (like the activity being destroyed) and must not outlive the view.
+     * </p>
+     *
+     * @param key identifies the view the layouts were created for
+     */
+    void retain(String key) {
+        final Retained retainedLayouts = new Retained(this);
+        if (retainedLayouts.steps.length == 0) {
+            retained.remove(key);
+            return;
+        }
+        retained.put(key, retainedLayouts);
+    }
+
+    /**
+     * Take the layouts retained under the given key, to be adopted by the next {@link #restore()}. They are no longer
+     * retained, whether they end up restored or not.
+     *
+     * @param key identifies the view the layouts were created for
+     */
+    void takeRetained(String key) {
+        taken = retained.remove(key);
+    }
+
+    /**
+     * Adopt the layouts taken with {@link #takeRetained(String)}, if they were created with the same width and text
+     * size. The layouts whose label changed since are dropped. Taken layouts are released in any case, they can only
+     * be restored once.
+     *
+     * @return {@code true} if layouts were restored
+     */
+    boolean restore() {
+        final Retained retainedLayouts = taken;
+        taken = null;
+        if (retainedLayouts == null || provider == null || retainedLayouts.width != width ||
+                retainedLayouts.textSize != paint.getTextSize()) {
+            return false;
+        }
+
+        setCapacity(retainedLayouts.steps.length);
+        boolean restored = false;
+        for (int i = 0; i < retainedLayouts.steps.length; i++) {
+            final int step = retainedLayouts.steps[i];
+            final StaticLayout layout = retainedLayouts.layouts[i];
+            if (!layouts.containsKey(step) && TextUtils.equals(layout.getText(), provider.getLabel(step))) {
+                layouts.put(step, layout);
+                maxLineCount = Math.max(maxLineCount, layout.getLineCount());
+                restored = true;
+            }
+        }
+        if (restored) {
+            // Created with the paint of the previous view
+            syncPaints();
+        }
+        return restored;
+    }
+
+    /**
+     * Layouts of a cache, with the width and text size they were created with.
+     */
+    private static final class Retained {
+
+        final int width;
+        final float textSize;
+        /**
+         * Steps with a plain text label and their layouts, from the least to the most recently used
+         */
+        final int[] steps;
+        final StaticLayout[] layouts;
+
+        Retained(LabelLayoutCache cache) {
+            width = cache.width;
+            textSize = cache.paint.getTextSize();
+            int count = 0;
+            for (LayoutLru.Entry entry = cache.layouts.eldest(); entry != null; entry = cache.layouts.newer(entry)) {
+                if (!(entry.layout.getText() instanceof Spanned)) {
+                    count++;
+                }
+            }
+            steps = new int[count];
+            layouts = new StaticLayout[count];
+            int i = 0;
+            for (LayoutLru.Entry entry = cache.layouts.eldest(); entry != null; entry = cache.layouts.newer(entry)) {
+                if (!(entry.layout.getText() instanceof Spanned)) {
+                    steps[i] = entry.step;
+                    layouts[i] = entry.layout;
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Layouts by step, in access order: the least recently used layouts are evicted beyond the capacity. Keyed by int
+     * so that looking up a cached layout doesn't box the step, nothing is allocated unless a layout is added.
+     */
+    private static final class LayoutLru {
+
+        private final SparseArray<Entry> entries = new SparseArray<>();
+        /**
+         * Sentinel of the circular list of the entries, from the least ({@code head.next}) to the most recently used
+         * ({@code head.previous})
+         */
+        private final Entry head = new Entry(-1, null);
+        private int capacity;
+
+        LayoutLru(int capacity) {
+            this.capacity = capacity;
+            head.previous = head.next = head;
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        boolean containsKey(int step) {
+            return entries.get(step) != null;
+        }
+
+        /**
+         * @return the layout of the step, now the most recently used one, or {@code null}
+         */
+        @Nullable
+        StaticLayout get(int step) {
+            final Entry entry = entries.get(step);
+            if (entry == null) {
+                return null;
+            }
+            unlink(entry);
+            linkLast(entry);
+            return entry.layout;
+        }
+
+        void put(int step, StaticLayout layout) {
+            Entry entry = entries.get(step);
+            if (entry == null) {
+                entry = new Entry(step, layout);
+                entries.put(step, entry);
+            } else {
+                entry.layout = layout;
+                unlink(entry);
+            }
+            linkLast(entry);
+            trimToCapacity();
+        }
+
+        void setCapacity(int capacity) {
+            this.capacity = capacity;
+            trimToCapacity();
+        }
+
+        private void trimToCapacity() {
+            while (entries.size() > capacity) {
+                final Entry eldest = head.next;
+                unlink(eldest);
+                entries.remove(eldest.step);
+            }
+        }
+
+        void remove(int step) {
+            final Entry entry = entries.get(step);
+            if (entry != null) {
+                unlink(entry);
+                entries.remove(step);
+            }
+        }
+
+        /**
+         * Move the steps from {@code fromStep}, keeping their order of use.
+         */
+        void shift(int fromStep, int offset) {
+            // Remove the moved steps first, their new positions may be the old positions of other moved steps
+            for (Entry entry = head.next; entry != head; entry = entry.next) {
+                if (entry.step >= fromStep) {
+                    entries.remove(entry.step);
+                }
+            }
+            for (Entry entry = head.next; entry != head; entry = entry.next) {
+                if (entry.step >= fromStep) {
+                    entry.step += offset;
+                    entries.put(entry.step, entry);
+                }
+            }
+        }
+
+        void clear() {
+            entries.clear();
+            head.previous = head.next = head;
+        }
+
+        /**
+         * @return the least recently used entry, or {@code null} if empty
+         */
+        @Nullable
+        Entry eldest() {
+            return head.next == head ? null : head.next;
+        }
+
+        /**
+         * @return the entry used after the given one, or {@code null} if it is the most recently used
+         */
+        @Nullable
+        Entry newer(Entry entry) {
+            return entry.next == head ? null : entry.next;
+        }
+
+        private void linkLast(Entry entry) {
+            entry.previous = head.previous;
+            entry.next = head;
+            head.previous.next = entry;
+            head.previous = entry;
+        }
+
+        private static void unlink(Entry entry) {
+            entry.previous.next = entry.next;
+            entry.next.previous = entry.previous;
+        }
+
+        static final class Entry {
+
+            int step;
+            StaticLayout layout;
+            Entry previous, next;
+
+            Entry(int step, StaticLayout layout) {
+                this.step = step;
+                this.layout = layout;
+            }
+        }
+    }
+
+    /**
+     * Lays out a range of labels on a worker thread.
+     */
+    private static final class LayoutTask implements Runnable {
+
+        private final CharSequence[] labels;
+        private final StaticLayout[] results;
+        private final int from, to;
+        private final TextPaint paint;
+        private final int width;
+        private final CountDownLatch done;
+        private final Throwable[] error;
+
+        LayoutTask(CharSequence[] labels, StaticLayout[] results, int from, int to, TextPaint paint, int width,
+                   CountDownLatch done, Throwable[] error) {
+            this.labels = labels;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.paint = paint;
+            this.width = width;
+            this.done = done;
+            this.error = error;
+        }
+
+        @Override
+        public void run() {
+            try {
+                layout(labels, results, from, to, paint, width);
+            } catch (Throwable t) {
+                synchronized (error) {
+                    error[0] = t;
+                }
+            } finally {
+                // Publishes the results to the waiting thread
+                done.countDown();
+            }
+        }
+    }
+}
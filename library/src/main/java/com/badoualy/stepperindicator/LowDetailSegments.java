@@ -0,0 +1,100 @@
+package com.badoualy.stepperindicator;
+
+import java.util.Arrays;
+
+/**
+ * Segments of the progress bar drawn in low detail mode, see
+ * {@link PrimitiveStepperRenderer#render(StepperGeometry, StepperRenderState)}.
+ * <p>
+ * Merging the steps in segments goes over every step, it is only done again when the positions, the current step or
+ * the step states change. Each segment is at least a pixel wide (but the last one), so replaying them costs at most
+ * one rect per pixel column, whatever the number of steps.
+ * </p>
+ */
+final class LowDetailSegments {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    int count;
+    /**
+     * Last step of each segment (the step a segment ends with, used as the step the rect belongs to)
+     */
+    int[] steps = new int[INITIAL_CAPACITY];
+    /**
+     * {@code SEGMENT_*} category of each segment
+     */
+    int[] categories = new int[INITIAL_CAPACITY];
+    /**
+     * Horizontal bounds of each segment
+     */
+    float[] starts = new float[INITIAL_CAPACITY];
+    float[] ends = new float[INITIAL_CAPACITY];
+
+    // Inputs the segments were built from
+    private StepperGeometry geometry;
+    private int geometryVersion;
+    private int currentStep;
+    private StepStates stepStates;
+    private int stepStatesVersion;
+
+    /**
+     * @return {@code true} if the segments were built from the given geometry and state, and they did not change since
+     */
+    boolean isValid(StepperGeometry geometry, StepperRenderState state) {
+        return this.geometry == geometry && geometryVersion == geometry.version
+                && currentStep == state.currentStep && stepStates == state.stepStates
+                && (stepStates == null || stepStatesVersion == stepStates.getVersion());
+    }
+
+    /**
+     * Merge the steps in segments: consecutive steps in the same category are merged in a single segment, and steps
+     * sharing the same pixel are merged using the most important category.
+     */
+    void build(StepperGeometry geometry, StepperRenderState state) {
+        this.geometry = geometry;
+        geometryVersion = geometry.version;
+        currentStep = state.currentStep;
+        stepStates = state.stepStates;
+        stepStatesVersion = stepStates == null ? 0 : stepStates.getVersion();
+        count = 0;
+
+        final float[] stepX = geometry.stepX;
+        final float halfSpacing = geometry.stepSpacing / 2f;
+
+        float segmentStart = stepX[0] - halfSpacing;
+        int segmentCategory = PrimitiveStepperRenderer.getSegmentCategory(state, 0);
+        for (int i = 1; i < geometry.stepCount; i++) {
+            final int category = PrimitiveStepperRenderer.getSegmentCategory(state, i);
+            if (category == segmentCategory) {
+                continue;
+            }
+
+            final float stepStart = stepX[i] - halfSpacing;
+            if (stepStart - segmentStart >= 1f) {
+                add(i - 1, segmentStart, stepStart, segmentCategory);
+                segmentStart = stepStart;
+                segmentCategory = category;
+            } else {
+                // Less than a pixel wide, keep the most important category
+                segmentCategory = Math.max(segmentCategory, category);
+            }
+        }
+        final int lastStep = geometry.stepCount - 1;
+        add(lastStep, segmentStart, stepX[lastStep] + halfSpacing, segmentCategory);
+    }
+
+    private void add(int step, float start, float end, int category) {
+        if (count == steps.length) {
+            final int capacity = count * 2;
+            steps = Arrays.copyOf(steps, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        steps[count] = step;
+        categories[count] = category;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+}
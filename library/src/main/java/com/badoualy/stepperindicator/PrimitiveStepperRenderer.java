@@ -0,0 +1,298 @@
+package com.badoualy.stepperindicator;
+
+/**
+ * {@link StepperRenderer} implementing the render pass of the {@link StepperIndicator} on top of a few drawing
+ * primitives. Backends only implement the primitives: drawing to a canvas, recording, etc.
+ * <p>
+ * Paints are referenced by their {@code PAINT_*} identifier, backends resolve them (per step if needed).
+ * </p>
+ * <p>
+ * Every drawn step is issued again on each frame, nothing is cached between frames: only the invalidated area is
+ * redrawn while a transition runs.
+ * </p>
+ */
+abstract class PrimitiveStepperRenderer implements StepperRenderer {
+
+    /**
+     * Circle of the step
+     */
+    static final int PAINT_CIRCLE = 0;
+    /**
+     * Dashed circle of an optional step
+     */
+    static final int PAINT_OPTIONAL_CIRCLE = 1;
+    /**
+     * Indicator (bullet, check background) of the step
+     */
+    static final int PAINT_INDICATOR = 2;
+    /**
+     * Default indicator, whatever the step
+     */
+    static final int PAINT_DEFAULT_INDICATOR = 3;
+    /**
+     * Failed step
+     */
+    static final int PAINT_FAILED = 4;
+    static final int PAINT_LINE = 5;
+    static final int PAINT_LINE_DONE = 6;
+    static final int PAINT_LINE_DONE_ANIMATED = 7;
+    /**
+     * Segment of the progress bar in low detail mode, add the {@code SEGMENT_*} category to get the paint
+     */
+    static final int PAINT_SEGMENT = 8;
+    /**
+     * Progress ring of a step, after the segment paints
+     */
+    static final int PAINT_PROGRESS = 13;
+    /**
+     * Highlight of the step under the finger while scrubbing
+     */
+    static final int PAINT_HIGHLIGHT = 14;
+
+    // Steps categories in low detail mode, by increasing priority when merged in a single pixel
+    static final int SEGMENT_PENDING = 0;
+    static final int SEGMENT_SKIPPED = 1;
+    static final int SEGMENT_DONE = 2;
+    static final int SEGMENT_CURRENT = 3;
+    static final int SEGMENT_FAILED = 4;
+
+    /**
+     * Segments drawn in low detail mode, merged again only when the steps change
+     */
+    private final LowDetailSegments lowDetailSegments = new LowDetailSegments();
+
+    @Override
+    public void render(StepperGeometry geometry, StepperRenderState state) {
+        if (geometry.stepCount == 0) {
+            return;
+        }
+        if (geometry.lowDetail) {
+            renderLowDetail(geometry, state);
+            return;
+        }
+
+        final int lastStep = Math.min(state.lastStep, geometry.stepCount - 1);
+        for (int i = Math.max(0, state.firstStep); i <= lastStep; i++) {
+            renderStep(geometry, state, i);
+        }
+    }
+
+    /**
+     * Draw a single step: circle, indicator, check, number, label, state and the line to the next step.
+     *
+     * @param step step position
+     */
+    private void renderStep(StepperGeometry geometry, StepperRenderState state, int step) {
+        final float centerY = geometry.centerY;
+        final int currentStep = state.currentStep;
+        final int previousStep = state.previousStep;
+
+        // Currently Drawing animation from step n-1 to n, or back from n+1 to n
+        boolean drawToNext = previousStep == currentStep - 1;
+        boolean drawFromNext = previousStep == currentStep + 1;
+
+        final float indicator = geometry.stepX[step];
+
+        final int stepState = state.getStepState(step);
+        // Progress of the state change, only animated for the steps which changed
+        final float stateProgress = state.getStateProgress(step);
+
+        // We draw the "done" check if previous step, or if we are going back (if going back, animated value will reduce radius to 0)
+        boolean drawCheck = stepState == StepStates.STATE_DONE ||
+                (stepState == StepStates.STATE_DEFAULT &&
+                        (step < currentStep || (drawFromNext && step == currentStep)));
+
+        // Highlight the touch area of the scrubbed step, behind the step
+        if (step == state.highlightedStep) {
+            drawCircle(step, indicator, centerY, state.circleRadius * 2, PAINT_HIGHLIGHT);
+        }
+
+        // Draw back circle
+        drawCircle(step, indicator, centerY, state.circleRadius,
+                   state.isStepOptional(step) ? PAINT_OPTIONAL_CIRCLE : PAINT_CIRCLE);
+
+        // Draw progress ring over the back circle
+        final float progress = state.getStepProgress(step);
+        if (progress > 0f) {
+            drawArc(step, indicator, centerY, state.circleRadius, progress, PAINT_PROGRESS);
+        }
+
+        // Draw the step number inside the back circle if the flag for this is set to true
+        if (state.showStepTextNumber) {
+            drawStepNumber(step, indicator, centerY);
+        }
+
+        if (state.showLabels) {
+            drawLabel(step, indicator, geometry.labelTop);
+        }
+
+        if (state.useBottomIndicator) {
+            // Show the current step indicator as bottom line
+            if (step == currentStep) {
+                // Draw custom indicator for current step only
+                drawBottomIndicator(geometry, state, step);
+            }
+        } else {
+            // Show the current step indicator as bullet
+            // If current step, or coming back from next step and still animating
+            if ((step == currentStep && !drawFromNext) ||
+                    (step == previousStep && drawFromNext && state.inAnimation)) {
+                // Draw animated indicator
+                drawCircle(step, indicator, centerY, state.animIndicatorRadius, PAINT_INDICATOR);
+            }
+        }
+
+        // Draw check mark
+        if (drawCheck) {
+            float radius = state.checkRadius;
+            // Use animated radius value?
+            if ((step == previousStep && drawToNext) || (step == currentStep && drawFromNext)) {
+                radius = state.animCheckRadius;
+            } else if (stepState == StepStates.STATE_DONE) {
+                radius *= stateProgress;
+            }
+            drawCircle(step, indicator, centerY, radius, PAINT_INDICATOR);
+
+            // Draw check bitmap
+            if (state.showDoneIcon) {
+                if ((step != previousStep && step != currentStep) ||
+                        (!state.inCheckAnimation && !(step == currentStep && !state.inAnimation))) {
+                    drawDoneIcon(step, indicator, centerY);
+                }
+            }
+        }
+
+        if (stepState == StepStates.STATE_FAILED) {
+            // Failure takes over the step
+            drawCircle(step, indicator, centerY, state.checkRadius * stateProgress, PAINT_FAILED);
+        } else if (stepState == StepStates.STATE_SKIPPED) {
+            // Strike through the step
+            float halfLength = state.circleRadius * stateProgress;
+            drawLine(step, indicator - halfLength, centerY, indicator + halfLength, centerY, PAINT_LINE);
+        }
+
+        // Draw lines
+        if (step < geometry.stepCount - 1) {
+            if (step >= currentStep) {
+                drawStepLine(geometry, step, PAINT_LINE);
+                if (step == currentStep && drawFromNext && (state.inLineAnimation || state.inIndicatorAnimation)) {
+                    // Coming back from n+1
+                    drawStepLine(geometry, step, PAINT_LINE_DONE_ANIMATED);
+                }
+            } else {
+                if (step == currentStep - 1 && drawToNext && state.inLineAnimation) {
+                    // Going to n+1
+                    drawStepLine(geometry, step, PAINT_LINE);
+                    drawStepLine(geometry, step, PAINT_LINE_DONE_ANIMATED);
+                } else {
+                    drawStepLine(geometry, step, PAINT_LINE_DONE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw the steps as a segmented progress bar, used when the steps are too dense to be drawn one by one.
+     * <p>
+     * The segments are only merged again when the steps changed (see {@link LowDetailSegments}), a frame draws at
+     * most one rect per pixel column.
+     * </p>
+     */
+    private void renderLowDetail(StepperGeometry geometry, StepperRenderState state) {
+        if (!lowDetailSegments.isValid(geometry, state)) {
+            lowDetailSegments.build(geometry, state);
+        }
+        final float top = geometry.centerY - state.indicatorRadius;
+        final float bottom = geometry.centerY + state.indicatorRadius;
+        final LowDetailSegments segments = lowDetailSegments;
+        for (int i = 0; i < segments.count; i++) {
+            drawRect(segments.steps[i], segments.starts[i], top, segments.ends[i], bottom,
+                     PAINT_SEGMENT + segments.categories[i]);
+        }
+
+        if (state.useBottomIndicator && state.currentStep < geometry.stepCount) {
+            drawBottomIndicator(geometry, state, state.currentStep);
+        }
+    }
+
+    private void drawBottomIndicator(StepperGeometry geometry, StepperRenderState state, int step) {
+        final float indicator = geometry.stepX[step];
+        drawRect(step, indicator - state.bottomIndicatorWidth / 2, geometry.height - state.bottomIndicatorHeight,
+                 indicator + state.bottomIndicatorWidth / 2, geometry.height,
+                 state.useBottomIndicatorWithStepColors ? PAINT_INDICATOR : PAINT_DEFAULT_INDICATOR);
+    }
+
+    private void drawStepLine(StepperGeometry geometry, int line, int paint) {
+        final float startX = geometry.lineStartX[line];
+        drawStepLine(line, startX, geometry.centerY, startX + geometry.lineLength, paint);
+    }
+
+    /**
+     * @param step step position
+     * @return the {@code SEGMENT_*} category of the step
+     */
+    static int getSegmentCategory(StepperRenderState state, int step) {
+        switch (state.getStepState(step)) {
+            case StepStates.STATE_FAILED:
+                return SEGMENT_FAILED;
+            case StepStates.STATE_SKIPPED:
+                return SEGMENT_SKIPPED;
+            case StepStates.STATE_DONE:
+                return SEGMENT_DONE;
+            default:
+                if (step == state.currentStep) {
+                    return SEGMENT_CURRENT;
+                }
+                return step < state.currentStep ? SEGMENT_DONE : SEGMENT_PENDING;
+        }
+    }
+
+    /**
+     * @param step  step the circle belongs to
+     * @param paint {@code PAINT_*} identifier
+     */
+    protected abstract void drawCircle(int step, float cx, float cy, float radius, int paint);
+
+    /**
+     * Draw an arc of the circle, clockwise from the top.
+     *
+     * @param step     step the arc belongs to
+     * @param fraction fraction of the circle to draw, from 0 to 1
+     * @param paint    {@code PAINT_*} identifier
+     */
+    protected abstract void drawArc(int step, float cx, float cy, float radius, float fraction, int paint);
+
+    /**
+     * @param step  step the rect belongs to (first step of the segment in low detail mode)
+     * @param paint {@code PAINT_*} identifier
+     */
+    protected abstract void drawRect(int step, float left, float top, float right, float bottom, int paint);
+
+    /**
+     * @param step  step the line belongs to
+     * @param paint {@code PAINT_*} identifier
+     */
+    protected abstract void drawLine(int step, float startX, float startY, float stopX, float stopY, int paint);
+
+    /**
+     * Draw the line between the step {@code line} and the next one.
+     *
+     * @param paint {@code PAINT_*} identifier
+     */
+    protected abstract void drawStepLine(int line, float startX, float y, float stopX, int paint);
+
+    /**
+     * Draw the number of the step centered on the given position.
+     */
+    protected abstract void drawStepNumber(int step, float cx, float cy);
+
+    /**
+     * Draw the label of the step (if any), anchored on its top-middle point.
+     */
+    protected abstract void drawLabel(int step, float x, float top);
+
+    /**
+     * Draw the done icon centered on the given position.
+     */
+    protected abstract void drawDoneIcon(int step, float cx, float cy);
+}
@@ -0,0 +1,164 @@
+package com.badoualy.stepperindicator;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * {@link StepperRenderer} recording the draw operations of a frame in primitive arrays instead of drawing them.
+ * <p>
+ * Only depends on plain Java, it is used to count and compare draw operations and to benchmark the render pass on
+ * the JVM, without a device. Buffers grow as needed and are kept between frames: once warmed up, recording a frame
+ * does not allocate.
+ * </p>
+ */
+final class RecordingStepperRenderer extends PrimitiveStepperRenderer {
+
+    static final int OP_CIRCLE = 0;
+    static final int OP_RECT = 1;
+    static final int OP_LINE = 2;
+    static final int OP_STEP_LINE = 3;
+    static final int OP_STEP_NUMBER = 4;
+    static final int OP_LABEL = 5;
+    static final int OP_DONE_ICON = 6;
+    static final int OP_ARC = 7;
+    private static final int OP_TYPE_COUNT = 8;
+
+    private static final String[] OP_NAMES = {
+            "circle", "rect", "line", "stepLine", "stepNumber", "label", "doneIcon", "arc"
+    };
+
+    // Per operation: type, step, paint
+    private static final int INTS_PER_OP = 3;
+    // Per operation: up to 4 coordinates
+    private static final int FLOATS_PER_OP = 4;
+
+    private int[] ints = new int[64 * INTS_PER_OP];
+    private float[] floats = new float[64 * FLOATS_PER_OP];
+    private int opCount;
+    private final int[] opCountByType = new int[OP_TYPE_COUNT];
+
+    @Override
+    public void render(StepperGeometry geometry, StepperRenderState state) {
+        reset();
+        super.render(geometry, state);
+    }
+
+    /**
+     * Clear the recorded operations, keeping the buffers.
+     */
+    void reset() {
+        opCount = 0;
+        Arrays.fill(opCountByType, 0);
+    }
+
+    /**
+     * @return number of operations recorded by the last render
+     */
+    int getOpCount() {
+        return opCount;
+    }
+
+    /**
+     * @param type {@code OP_*} type
+     * @return number of operations of the given type recorded by the last render
+     */
+    int getOpCount(int type) {
+        return opCountByType[type];
+    }
+
+    int getOpType(int op) {
+        return ints[op * INTS_PER_OP];
+    }
+
+    int getOpStep(int op) {
+        return ints[op * INTS_PER_OP + 1];
+    }
+
+    int getOpPaint(int op) {
+        return ints[op * INTS_PER_OP + 2];
+    }
+
+    /**
+     * @param op    operation index
+     * @param index coordinate index, from 0 to 3
+     * @return the coordinate of the operation ({@code 0} if unused)
+     */
+    float getOpCoordinate(int op, int index) {
+        return floats[op * FLOATS_PER_OP + index];
+    }
+
+    /**
+     * Append a readable description of the recorded operations, one per line.
+     *
+     * @param out where to write the description
+     */
+    void dump(StringBuilder out) {
+        for (int op = 0; op < opCount; op++) {
+            out.append(OP_NAMES[getOpType(op)])
+               .append(" step=").append(getOpStep(op))
+               .append(" paint=").append(getOpPaint(op));
+            for (int i = 0; i < FLOATS_PER_OP; i++) {
+                out.append(' ').append(String.format(Locale.US, "%.2f", getOpCoordinate(op, i)));
+            }
+            out.append('\n');
+        }
+    }
+
+    private void record(int type, int step, int paint, float a, float b, float c, float d) {
+        if ((opCount + 1) * INTS_PER_OP > ints.length) {
+            ints = Arrays.copyOf(ints, ints.length * 2);
+            floats = Arrays.copyOf(floats, floats.length * 2);
+        }
+        int i = opCount * INTS_PER_OP;
+        ints[i] = type;
+        ints[i + 1] = step;
+        ints[i + 2] = paint;
+        i = opCount * FLOATS_PER_OP;
+        floats[i] = a;
+        floats[i + 1] = b;
+        floats[i + 2] = c;
+        floats[i + 3] = d;
+        opCount++;
+        opCountByType[type]++;
+    }
+
+    @Override
+    protected void drawCircle(int step, float cx, float cy, float radius, int paint) {
+        record(OP_CIRCLE, step, paint, cx, cy, radius, 0);
+    }
+
+    @Override
+    protected void drawArc(int step, float cx, float cy, float radius, float fraction, int paint) {
+        record(OP_ARC, step, paint, cx, cy, radius, fraction);
+    }
+
+    @Override
+    protected void drawRect(int step, float left, float top, float right, float bottom, int paint) {
+        record(OP_RECT, step, paint, left, top, right, bottom);
+    }
+
+    @Override
+    protected void drawLine(int step, float startX, float startY, float stopX, float stopY, int paint) {
+        record(OP_LINE, step, paint, startX, startY, stopX, stopY);
+    }
+
+    @Override
+    protected void drawStepLine(int line, float startX, float y, float stopX, int paint) {
+        record(OP_STEP_LINE, line, paint, startX, y, stopX, y);
+    }
+
+    @Override
+    protected void drawStepNumber(int step, float cx, float cy) {
+        record(OP_STEP_NUMBER, step, -1, cx, cy, 0, 0);
+    }
+
+    @Override
+    protected void drawLabel(int step, float x, float top) {
+        record(OP_LABEL, step, -1, x, top, 0, 0);
+    }
+
+    @Override
+    protected void drawDoneIcon(int step, float cx, float cy) {
+        record(OP_DONE_ICON, step, -1, cx, cy, 0, 0);
+    }
+}
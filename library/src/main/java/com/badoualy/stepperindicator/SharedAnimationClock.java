@@ -0,0 +1,242 @@
+package com.badoualy.stepperindicator;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Frame clock running the step transitions of every {@link StepperIndicator} using it, from a single
+ * {@link Choreographer} frame callback.
+ * <p>
+ * Each running transition is a slot in flat arrays: the indicator, its timings and its direction. On each frame, the
+ * clock computes the fraction of the 3 parts of each transition (line, check mark, indicator) and hands them to the
+ * indicator. The cost of a frame only depends on the number of running transitions, nothing is allocated once the
+ * arrays are large enough. Only used from the main thread.
+ * </p>
+ * <p>
+ * The clock strongly references the indicators while their transition runs: an indicator cancels its transition
+ * when it is detached from the window, so that the clock never keeps a detached view (and its activity) alive.
+ * </p>
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class SharedAnimationClock implements Choreographer.FrameCallback {
+
+    /**
+     * Fraction of a part of the transition which did not start yet
+     */
+    static final float NOT_STARTED = -1f;
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static SharedAnimationClock instance;
+
+    private StepperIndicator[] indicators = new StepperIndicator[INITIAL_CAPACITY];
+    /**
+     * Time of the first frame of each transition, minus the play time to skip. {@code 0} until the first frame.
+     */
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    /**
+     * Play time already elapsed when each transition started, in milliseconds
+     */
+    private long[] skipTimes = new long[INITIAL_CAPACITY];
+    private long[] lineDurations = new long[INITIAL_CAPACITY];
+    private long[] indicatorDurations = new long[INITIAL_CAPACITY];
+    private long[] checkDurations = new long[INITIAL_CAPACITY];
+    private boolean[] forward = new boolean[INITIAL_CAPACITY];
+    private int count;
+    private boolean scheduled;
+    /**
+     * {@code true} while the indicators are called back: removed slots are only cleared, and compacted after the frame
+     */
+    private boolean inFrame;
+
+    private SharedAnimationClock() {
+    }
+
+    static SharedAnimationClock getInstance() {
+        if (instance == null) {
+            instance = new SharedAnimationClock();
+        }
+        return instance;
+    }
+
+    /**
+     * Start the transition of the indicator, replacing its running one if any.
+     * <p>
+     * Going forward, the line and the check mark are animated together, then the indicator. Going backward, the
+     * indicator, the line, then the check mark are animated one after the other.
+     * </p>
+     *
+     * @param indicator         indicator to animate
+     * @param forward           {@code true} when going to the next step
+     * @param lineDuration      duration of the line animation, in milliseconds
+     * @param indicatorDuration duration of the indicator animation, in milliseconds
+     * @param checkDuration     duration of the check mark animation, in milliseconds
+     * @param playTime          play time already elapsed, in milliseconds, to resume a transition
+     */
+    void start(StepperIndicator indicator, boolean forward, long lineDuration, long indicatorDuration,
+               long checkDuration, long playTime) {
+        int slot = indexOf(indicator);
+        if (slot < 0) {
+            if (count == indicators.length) {
+                grow();
+            }
+            slot = count++;
+        }
+        indicators[slot] = indicator;
+        startTimes[slot] = 0;
+        skipTimes[slot] = playTime;
+        lineDurations[slot] = lineDuration;
+        indicatorDurations[slot] = indicatorDuration;
+        checkDurations[slot] = checkDuration;
+        this.forward[slot] = forward;
+
+        if (!scheduled) {
+            scheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stop the transition of the indicator, without any further frame.
+     *
+     * @return {@code true} if a transition of the indicator was running
+     */
+    boolean cancel(StepperIndicator indicator) {
+        final int slot = indexOf(indicator);
+        if (slot < 0) {
+            return false;
+        }
+        indicators[slot] = null;
+        if (inFrame) {
+            // Compacted after the frame, the slots of the frame must not move
+            return true;
+        }
+        compact();
+        if (count == 0 && scheduled) {
+            scheduled = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        return true;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        inFrame = true;
+        // Transitions started by the callbacks are added after frameCount, they get their first frame on the next one
+        final int frameCount = count;
+        for (int i = 0; i < frameCount; i++) {
+            if (indicators[i] == null) {
+                // Cancelled by a callback
+                continue;
+            }
+            if (startTimes[i] == 0) {
+                startTimes[i] = frameTimeNanos - skipTimes[i] * NANOS_PER_MILLI;
+            }
+            final long elapsed = (frameTimeNanos - startTimes[i]) / NANOS_PER_MILLI;
+            final long lineDuration = lineDurations[i];
+            final long indicatorDuration = indicatorDurations[i];
+            final long checkDuration = checkDurations[i];
+
+            final float line, check, indicator;
+            final long totalDuration;
+            if (forward[i]) {
+                line = getFraction(elapsed, 0, lineDuration);
+                check = getFraction(elapsed, 0, checkDuration);
+                indicator = getFraction(elapsed, lineDuration, indicatorDuration);
+                totalDuration = Math.max(lineDuration + indicatorDuration, checkDuration);
+            } else {
+                indicator = getFraction(elapsed, 0, indicatorDuration);
+                line = getFraction(elapsed, indicatorDuration, lineDuration);
+                check = getFraction(elapsed, indicatorDuration + lineDuration, checkDuration);
+                totalDuration = indicatorDuration + lineDuration + checkDuration;
+            }
+
+            final StepperIndicator target = indicators[i];
+            final boolean finished = elapsed >= totalDuration;
+            if (finished) {
+                // Before the callback, which may start a new transition
+                indicators[i] = null;
+            }
+            target.onSharedClockFrame(line, check, indicator, finished);
+        }
+        inFrame = false;
+        compact();
+
+        if (count > 0 && !scheduled) {
+            scheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * @return the fraction of the part of the transition starting at {@code start}, {@link #NOT_STARTED} if it did
+     * not start yet
+     */
+    private static float getFraction(long elapsed, long start, long duration) {
+        if (elapsed < start) {
+            return NOT_STARTED;
+        }
+        if (elapsed >= start + duration) {
+            return 1f;
+        }
+        return (float) (elapsed - start) / duration;
+    }
+
+    private int indexOf(StepperIndicator indicator) {
+        for (int i = 0; i < count; i++) {
+            if (indicators[i] == indicator) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the cleared slots, keeping the order of the others.
+     */
+    private void compact() {
+        int kept = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (indicators[slot] == null) {
+                continue;
+            }
+            if (slot != kept) {
+                indicators[kept] = indicators[slot];
+                startTimes[kept] = startTimes[slot];
+                skipTimes[kept] = skipTimes[slot];
+                lineDurations[kept] = lineDurations[slot];
+                indicatorDurations[kept] = indicatorDurations[slot];
+                checkDurations[kept] = checkDurations[slot];
+                forward[kept] = forward[slot];
+                // Don't keep the indicator alive
+                indicators[slot] = null;
+            }
+            kept++;
+        }
+        count = kept;
+    }
+
+    private void grow() {
+        final int capacity = indicators.length * 2;
+        final StepperIndicator[] grownIndicators = new StepperIndicator[capacity];
+        System.arraycopy(indicators, 0, grownIndicators, 0, count);
+        indicators = grownIndicators;
+        startTimes = grow(startTimes, capacity);
+        skipTimes = grow(skipTimes, capacity);
+        lineDurations = grow(lineDurations, capacity);
+        indicatorDurations = grow(indicatorDurations, capacity);
+        checkDurations = grow(checkDurations, capacity);
+        final boolean[] grownForward = new boolean[capacity];
+        System.arraycopy(forward, 0, grownForward, 0, count);
+        forward = grownForward;
+    }
+
+    private long[] grow(long[] array, int capacity) {
+        final long[] grown = new long[capacity];
+        System.arraycopy(array, 0, grown, 0, count);
+        return grown;
+    }
+}
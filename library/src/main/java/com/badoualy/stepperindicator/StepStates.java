@@ -0,0 +1,330 @@
+package com.badoualy.stepperindicator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <p>State of every step of a {@link StepperIndicator}, submitted via
+ * {@link StepperIndicator#submitState(StepStates)}. </p>
+ * <p> The states are stored in a byte array, one byte per step: the lower bits hold the state ({@link #STATE_DEFAULT},
+ * {@link #STATE_DONE}, {@link #STATE_FAILED} or {@link #STATE_SKIPPED}) and {@link #FLAG_OPTIONAL} marks an optional
+ * step. Steps in the default state are displayed based on the current step only. </p>
+ * <p> Modified steps are tracked separately (one bit per step) so that submitting the same instance again only looks
+ * at the steps changed since the previous submission. </p>
+ * <p> States can be encoded to a compact byte array with {@link #encode()}, to be saved in the instance state of the
+ * view. </p>
+ */
+@SuppressWarnings("unused")
+public final class StepStates {
+
+    /**
+     * No specific state, the step is displayed as done or not based on the current step.
+     */
+    public static final int STATE_DEFAULT = 0;
+    /**
+     * Step is done, whatever the current step is.
+     */
+    public static final int STATE_DONE = 1;
+    /**
+     * Step failed.
+     */
+    public static final int STATE_FAILED = 2;
+    /**
+     * Step was skipped.
+     */
+    public static final int STATE_SKIPPED = 3;
+    /**
+     * Flag marking an optional step, can be combined with any state.
+     */
+    public static final int FLAG_OPTIONAL = 1 << 2;
+
+    static final int STATE_MASK = 0x3;
+    static final int VALUE_MASK = STATE_MASK | FLAG_OPTIONAL;
+
+    /**
+     * Encoding of the steps as runs of the same value, each run on a varint: {@code (length - 1) << 3 | value}
+     */
+    private static final int FORMAT_RUNS = 0;
+    /**
+     * Encoding of the steps on 4 bits each, 2 steps per byte
+     */
+    private static final int FORMAT_PACKED = 1;
+    private static final int VALUE_BITS = 3;
+
+    private final byte[] states;
+    /**
+     * Steps modified since the last call to {@link #clearModifications()}.
+     */
+    private final BitSet modified;
+    /**
+     * Number of changes of the states, unlike {@link #modified} it is never cleared
+     */
+    private int version;
+
+    public StepStates(int stepCount) {
+        if (stepCount < 0) {
+            throw new IllegalArgumentException("stepCount must be >= 0");
+        }
+        states = new byte[stepCount];
+        modified = new BitSet(stepCount);
+    }
+
+    /**
+     * Create a copy of the given states.
+     *
+     * @param source states to copy
+     */
+    public StepStates(StepStates source) {
+        states = Arrays.copyOf(source.states, source.states.length);
+        modified = new BitSet(states.length);
+    }
+
+    private StepStates(byte[] states) {
+        this.states = states;
+        modified = new BitSet(states.length);
+    }
+
+    public int getStepCount() {
+        return states.length;
+    }
+
+    /**
+     * @param step step position
+     * @return one of the {@code STATE_*} values
+     */
+    public int getState(int step) {
+        return states[step] & STATE_MASK;
+    }
+
+    /**
+     * Set the state of a step, keeping its {@link #FLAG_OPTIONAL} flag.
+     *
+     * @param step  step position
+     * @param state one of the {@code STATE_*} values
+     */
+    public void setState(int step, int state) {
+        if ((state & ~STATE_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid step state " + state);
+        }
+        set(step, (states[step] & ~STATE_MASK) | state);
+    }
+
+    public boolean isOptional(int step) {
+        return (states[step] & FLAG_OPTIONAL) != 0;
+    }
+
+    public void setOptional(int step, boolean optional) {
+        set(step, optional ? states[step] | FLAG_OPTIONAL : states[step] & ~FLAG_OPTIONAL);
+    }
+
+    /**
+     * Reset every step to {@link #STATE_DEFAULT}, not optional.
+     */
+    public void clear() {
+        for (int i = 0; i < states.length; i++) {
+            set(i, STATE_DEFAULT);
+        }
+    }
+
+    /**
+     * @param step position of the new step, from 0 to {@link #getStepCount()} (inclusive)
+     * @return a copy of the states, without the modifications, with a step in {@link #STATE_DEFAULT} inserted at the
+     * given position
+     */
+    StepStates insertStep(int step) {
+        final byte[] inserted = new byte[states.length + 1];
+        System.arraycopy(states, 0, inserted, 0, step);
+        System.arraycopy(states, step, inserted, step + 1, states.length - step);
+        return new StepStates(inserted);
+    }
+
+    /**
+     * @param step position of the step to remove
+     * @return a copy of the states, without the modifications, without the given step
+     */
+    StepStates removeStep(int step) {
+        final byte[] removed = new byte[states.length - 1];
+        System.arraycopy(states, 0, removed, 0, step);
+        System.arraycopy(states, step + 1, removed, step, removed.length - step);
+        return new StepStates(removed);
+    }
+
+    /**
+     * Encode the states, without the modifications.
+     * <p>
+     * The encoded size is at most {@link #getMaxEncodedSize(int)}: half a byte per step, under 5 KB for 10,000 steps.
+     * Steps sharing the same state are stored as runs, so a typical timeline (done steps, then pending steps, with a
+     * few failed or skipped ones) only takes a few bytes.
+     * </p>
+     *
+     * @return the encoded states, to be decoded with {@link #decode(byte[])}
+     */
+    byte[] encode() {
+        // Use runs unless they are larger than the packed steps
+        int runsSize = 0;
+        for (int start = 0; start < states.length; ) {
+            final int end = getRunEnd(start);
+            runsSize += getVarIntSize((end - start - 1) << VALUE_BITS);
+            start = end;
+        }
+        final int packedSize = (states.length + 1) / 2;
+        final boolean packed = packedSize < runsSize;
+
+        final byte[] data = new byte[1 + getVarIntSize(states.length) + (packed ? packedSize : runsSize)];
+        data[0] = (byte) (packed ? FORMAT_PACKED : FORMAT_RUNS);
+        int offset = writeVarInt(data, 1, states.length);
+        if (packed) {
+            for (int i = 0; i < states.length; i++) {
+                data[offset + i / 2] |= (byte) (states[i] << (i % 2 == 0 ? 0 : 4));
+            }
+        } else {
+            for (int start = 0; start < states.length; ) {
+                final int end = getRunEnd(start);
+                offset = writeVarInt(data, offset, (end - start - 1) << VALUE_BITS | states[start]);
+                start = end;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @param data states encoded by {@link #encode()}
+     * @return the decoded states, without modifications
+     * @throws IllegalArgumentException if the data is not valid
+     */
+    static StepStates decode(byte[] data) {
+        if (data.length < 2) {
+            throw new IllegalArgumentException("Invalid step states: too short");
+        }
+        final int[] offset = {1};
+        final int stepCount = readVarInt(data, offset);
+        final StepStates stepStates = new StepStates(stepCount);
+        final byte[] states = stepStates.states;
+
+        if (data[0] == FORMAT_PACKED) {
+            if (data.length != offset[0] + (stepCount + 1) / 2) {
+                throw new IllegalArgumentException("Invalid step states: wrong size");
+            }
+            for (int i = 0; i < stepCount; i++) {
+                states[i] = (byte) ((data[offset[0] + i / 2] >> (i % 2 == 0 ? 0 : 4)) & VALUE_MASK);
+            }
+        } else if (data[0] == FORMAT_RUNS) {
+            int step = 0;
+            while (offset[0] < data.length) {
+                final int run = readVarInt(data, offset);
+                final int length = (run >>> VALUE_BITS) + 1;
+                if (length > stepCount - step) {
+                    throw new IllegalArgumentException("Invalid step states: too many steps");
+                }
+                Arrays.fill(states, step, step + length, (byte) (run & VALUE_MASK));
+                step += length;
+            }
+            if (step != stepCount) {
+                throw new IllegalArgumentException("Invalid step states: missing steps");
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid step states: unknown format " + data[0]);
+        }
+        return stepStates;
+    }
+
+    /**
+     * @param stepCount number of steps
+     * @return the max size of the encoded states of the given number of steps, in bytes
+     */
+    static int getMaxEncodedSize(int stepCount) {
+        return 1 + getVarIntSize(stepCount) + (stepCount + 1) / 2;
+    }
+
+    /**
+     * @return the end (exclusive) of the run of steps with the same value as the step {@code start}
+     */
+    private int getRunEnd(int start) {
+        int end = start + 1;
+        while (end < states.length && states[end] == states[start]) {
+            end++;
+        }
+        return end;
+    }
+
+    private static int getVarIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * @return the offset after the written value
+     */
+    private static int writeVarInt(byte[] data, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[offset++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * @param offset offset to read from, updated to the offset after the value
+     */
+    private static int readVarInt(byte[] data, int[] offset) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (offset[0] >= data.length) {
+                throw new IllegalArgumentException("Invalid step states: truncated");
+            }
+            final byte b = data[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Invalid step states: negative value");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid step states: malformed value");
+    }
+
+    /**
+     * @param step step position
+     * @return the raw value of the step: state and flags
+     */
+    int get(int step) {
+        return states[step];
+    }
+
+    /**
+     * @param step  step position
+     * @param value raw value of the step: state and flags
+     */
+    void set(int step, int value) {
+        if (states[step] != (byte) value) {
+            states[step] = (byte) value;
+            modified.set(step);
+            version++;
+        }
+    }
+
+    /**
+     * @return a number changing each time a step changes, to tell whether the states changed since a previous call
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @param fromStep step position to start from
+     * @return the next step position modified since the last {@link #clearModifications()} call, starting from
+     * {@code fromStep} (inclusive), or {@code -1}
+     */
+    int nextModifiedStep(int fromStep) {
+        return modified.nextSetBit(fromStep);
+    }
+
+    void clearModifications() {
+        modified.clear();
+    }
+}
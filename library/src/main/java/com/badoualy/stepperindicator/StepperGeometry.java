@@ -0,0 +1,119 @@
+package com.badoualy.stepperindicator;
+
+/**
+ * Resolved positions of the components of a {@link StepperIndicator}, computed once per layout change and given to
+ * the {@link StepperRenderer}.
+ * <p>
+ * Arrays are reused while the number of steps doesn't change.
+ * </p>
+ */
+final class StepperGeometry {
+
+    int stepCount;
+    /**
+     * X position of each step center
+     */
+    float[] stepX = new float[0];
+    /**
+     * X position of the start of each line between two steps
+     */
+    float[] lineStartX = new float[0];
+    /**
+     * "Constant" size of the lines between steps
+     */
+    float lineLength;
+    /**
+     * Distance between the center of two consecutive steps
+     */
+    float stepSpacing;
+    /**
+     * Y position of the steps center (and lines)
+     */
+    float centerY;
+    /**
+     * Y position of the top of the labels
+     */
+    float labelTop;
+    /**
+     * Size of the view
+     */
+    float width, height;
+    /**
+     * {@code true} if the steps are too dense to be drawn with their circles and lines. The steps are then drawn as a
+     * segmented progress bar, with a draw cost bounded by the width of the view rather than the number of steps.
+     */
+    boolean lowDetail;
+    /**
+     * Incremented each time the positions change, so that renderers can tell whether what they derived from the
+     * positions is still valid
+     */
+    int version;
+
+    /**
+     * @param x X position
+     * @return the step closest to the given position
+     */
+    int getStepAt(float x) {
+        if (stepCount <= 1) {
+            return 0;
+        }
+        final int step = Math.round((x - stepX[0]) / stepSpacing);
+        return Math.max(0, Math.min(stepCount - 1, step));
+    }
+
+    /**
+     * Compute the position of each step and line, evenly distributing the steps on the width.
+     *
+     * @param stepCount    number of steps
+     * @param width        width of the view
+     * @param height       height of the view
+     * @param startX       X position of the first step center (same margin is kept after the last step)
+     * @param stepDiameter size of a step circle, including its stroke
+     * @param lineMargin   margin at each side of the lines
+     * @param centerY      Y position of the steps center
+     * @param labelTop     Y position of the top of the labels
+     */
+    void compute(int stepCount, float width, float height, float startX, float stepDiameter, float lineMargin,
+                 float centerY, float labelTop) {
+        setStepCount(stepCount);
+        this.width = width;
+        this.height = height;
+        this.centerY = centerY;
+        this.labelTop = labelTop;
+
+        // Compute position of indicators and line length
+        stepSpacing = (width - startX * 2f) / (stepCount - 1);
+        lineLength = stepSpacing - stepDiameter - (lineMargin * 2);
+        // No room left for the lines, circles would soon overlap
+        lowDetail = lineLength <= 0 && width > 0;
+
+        for (int i = 0; i < stepCount; i++) {
+            stepX[i] = startX + stepSpacing * i;
+        }
+        computeLineStarts();
+        version++;
+    }
+
+    /**
+     * Compute the start of each line from the positions of the steps and the line length, centering the lines
+     * between their steps.
+     */
+    void computeLineStarts() {
+        for (int i = 0; !lowDetail && i < stepCount - 1; i++) {
+            lineStartX[i] = ((stepX[i] + stepX[i + 1]) / 2) - lineLength / 2;
+        }
+    }
+
+    /**
+     * Resize the arrays for the given number of steps, keeping them if the size is unchanged.
+     *
+     * @param stepCount number of steps
+     */
+    void setStepCount(int stepCount) {
+        this.stepCount = stepCount;
+        if (stepX.length != stepCount) {
+            stepX = new float[stepCount];
+            lineStartX = new float[Math.max(0, stepCount - 1)];
+        }
+    }
+}
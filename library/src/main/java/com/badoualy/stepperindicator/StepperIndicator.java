@@ -1,11 +1,17 @@
 package com.badoualy.stepperindicator;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
+import android.animation.TimeInterpolator;
 import android.annotation.TargetApi;
+import android.app.Activity;
 import android.content.Context;
+import android.content.ContextWrapper;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.DashPathEffect;
@@ -16,13 +22,20 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.support.annotation.AnyThread;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
 import android.text.Layout;
 import android.text.StaticLayout;
 import android.text.TextPaint;
@@ -30,13 +43,24 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.GestureDetector;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewTreeObserver;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.AnimationUtils;
 import android.view.animation.DecelerateInterpolator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * <p>Step indicator that can be used with (or without) a {@link ViewPager} to display current progress through an
@@ -179,6 +203,26 @@ import java.util.Random;
  * <td>Color for the labels</td>
  * <td>android:textColorSecondary defined in your project</td>
  * </tr>
+ * <tr>
+ * <td>stpi_failedColor</td>
+ * <td>Color for the steps in the {@link StepStates#STATE_FAILED} state</td>
+ * <td>#e53935 (red)</td>
+ * </tr>
+ * <tr>
+ * <td>stpi_progressColor</td>
+ * <td>Color of the progress ring of the steps, see {@link #setStepProgress(int, float)}</td>
+ * <td>Same as stpi_indicatorColor</td>
+ * </tr>
+ * <tr>
+ * <td>stpi_progressStrokeWidth</td>
+ * <td>Width of the progress ring of the steps</td>
+ * <td>Same as stpi_circleStrokeWidth</td>
+ * </tr>
+ * <tr>
+ * <td>stpi_prewarmOnIdle</td>
+ * <td>Prepare the animators, labels and positions once the main thread is idle</td>
+ * <td>false</td>
+ * </tr>
  * </tbody></table>
  * <p>
  * <p> Updated by Ionut Negru on 08/08/16 to add the stepClickListener feature.</p>
@@ -189,6 +233,25 @@ import java.util.Random;
 @SuppressWarnings("unused")
 public class StepperIndicator extends View implements ViewPager.OnPageChangeListener {
 
+    /**
+     * Full animations
+     *
+     * @see #setAdaptiveAnimationQuality(boolean)
+     */
+    public static final int ANIMATION_QUALITY_FULL = 0;
+    /**
+     * Shorter animations
+     *
+     * @see #setAdaptiveAnimationQuality(boolean)
+     */
+    public static final int ANIMATION_QUALITY_REDUCED = 1;
+    /**
+     * Shortest animations, without check mark pop and anti-aliasing
+     *
+     * @see #setAdaptiveAnimationQuality(boolean)
+     */
+    public static final int ANIMATION_QUALITY_MINIMAL = 2;
+
     private static final String TAG = "StepperIndicator";
 
     /**
@@ -199,9 +262,30 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
      * Max multiplier of the radius when a step is being animated to the "done" state before going to it's normal radius
      */
     private static final float EXPAND_MARK = 1.3f;
+    /**
+     * Alpha of the highlight of the scrubbed step
+     */
+    private static final int HIGHLIGHT_ALPHA = 0x40;
+    /**
+     * Interpolators of the transitions, shared by the animators and the {@link SharedAnimationClock} so that both
+     * paths animate the same way
+     */
+    private static final TimeInterpolator LINE_INTERPOLATOR = new DecelerateInterpolator();
+    private static final TimeInterpolator RADIUS_INTERPOLATOR = new AccelerateDecelerateInterpolator();
 
     private static final int STEP_INVALID = -1;
 
+    // Work requested by setters, coalesced while an update is in progress (see #beginUpdate())
+    private static final int UPDATE_DRAW = 1;
+    private static final int UPDATE_COMPUTE = 1 << 1;
+    private static final int UPDATE_LAYOUT = 1 << 2;
+
+    /**
+     * Posted progress are stored as {@code 1 + progress * PROGRESS_RESOLUTION}, {@code 0} meaning nothing was posted
+     */
+    private static final int PROGRESS_RESOLUTION = 10000;
+    private static final int NO_PROGRESS_POSTED = 0;
+
     /**
      * Paint used to draw circle
      */
@@ -263,6 +347,32 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
      */
     private Paint lineDoneAnimatedPaint;
 
+    /**
+     * Paint used to draw the circle of an optional step, dashed version of the step circle paint.
+     */
+    private Paint optionalCirclePaint;
+
+    /**
+     * Paint used to draw the steps in the {@link StepStates#STATE_FAILED} state.
+     */
+    private Paint failedPaint;
+
+    /**
+     * Paint used to draw the segments of the progress bar in low detail mode.
+     */
+    private Paint lowDetailPaint;
+
+    /**
+     * Paint used to draw the progress ring of the steps.
+     */
+    private Paint progressPaint;
+
+    /**
+     * Paint used to highlight the step under the finger while scrubbing, translucent version of the step indicator
+     * paint.
+     */
+    private Paint highlightPaint;
+
     /**
      * List of {@link Path} for each line between steps
      */
@@ -284,6 +394,11 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
      * DO NOT DELETE OR RENAME: Will be used by animations logic.
      */
     private float animCheckRadius;
+    /**
+     * The progress of the state change animation of the steps in {@link #stateChangedSteps}.
+     * DO NOT DELETE OR RENAME: Will be used by animations logic.
+     */
+    private float animStateProgress = 1f;
 
     /**
      * Flag indicating if the indicator for the current step should be displayed at the bottom.
@@ -311,15 +426,33 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
     private boolean useBottomIndicatorWithStepColors;
 
     /**
-     * "Constant" size of the lines between steps
+     * Positions of the steps, lines, etc.
+     */
+    private final StepperGeometry geometry = new StepperGeometry();
+    /**
+     * State snapshot given to the renderer, filled before each draw
+     */
+    private final StepperRenderState renderState = new StepperRenderState();
+    /**
+     * Renderer drawing to the canvas given to {@link #onDraw(Canvas)}
+     */
+    private final CanvasRenderer canvasRenderer = new CanvasRenderer();
+    /**
+     * Exposes the steps to the accessibility services, as virtual views
      */
-    private float lineLength;
+    private final StepAccessibilityHelper accessibilityHelper = new StepAccessibilityHelper();
 
     // Values retrieved from xml (or default values)
     private float checkRadius;
     private float indicatorRadius;
     private float lineMargin;
     private int animDuration;
+    /**
+     * Adapts the animations to the frame rate, {@code null} unless enabled via
+     * {@link #setAdaptiveAnimationQuality(boolean)}
+     */
+    private AnimationQualityMonitor animationQualityMonitor;
+    private OnAnimationQualityChangeListener onAnimationQualityChangeListener;
 
     /**
      * Custom step click listener which will notify any component which sets an listener of any events (touch events)
@@ -327,9 +460,29 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
      */
     private List<OnStepClickListener> onStepClickListeners = new ArrayList<>(0);
     /**
-     * Click areas for each of the steps supported by the StepperIndicator widget.
+     * Listeners notified of step changes and transitions. The array is replaced (never modified) when a listener is
+     * added or removed, so dispatching iterates over a stable snapshot without allocating.
+     */
+    private OnStepChangeListener[] onStepChangeListeners = new OnStepChangeListener[0];
+    /**
+     * Listeners notified of the scrubbed step, replaced (never modified) like {@link #onStepChangeListeners}.
+     * Scrubbing is only enabled while there is at least one listener.
+     */
+    private OnStepScrubListener[] onStepScrubListeners = new OnStepScrubListener[0];
+    /**
+     * Step under the finger while scrubbing, {@link #STEP_INVALID} if not scrubbing
+     */
+    private int scrubStep = STEP_INVALID;
+    /**
+     * Position of the finger when it went down, scrubbing starts once it moved horizontally further than
+     * {@link #touchSlop}
+     */
+    private float scrubDownX, scrubDownY;
+    private int touchSlop;
+    /**
+     * Click area of a step, computed on demand from the position of the step (see {@link #getStepClickArea(int)})
      */
-    private List<RectF> stepsClickAreas;
+    private final RectF stepClickArea = new RectF();
 
     /**
      * The gesture detector at which all the touch events will be propagated to.
@@ -339,28 +492,267 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
     private int currentStep;
     private int previousStep;
 
-    // X position of each step indicator's center
-    private float[] indicators;
+    /**
+     * {@code true} when the steps positions must be computed again before being used.
+     *
+     * @see #ensureGeometry()
+     */
+    private boolean geometryDirty = true;
     // Utils to avoid object instantiation during onDraw
     private Rect stepAreaRect = new Rect();
     private RectF stepAreaRectF = new RectF();
 
+    /**
+     * Per-step states applied via {@link #submitState(StepStates)}, {@code null} until states are submitted.
+     */
+    private StepStates stepStates;
+    /**
+     * Last instance given to {@link #submitState(StepStates)}, submitting it again only diffs its modified steps.
+     */
+    private StepStates submittedStates;
+    /**
+     * Steps whose state changed in the last submission, these are the only ones animated.
+     */
+    private final BitSet stateChangedSteps = new BitSet();
+    /**
+     * Area covered by the steps in {@link #stateChangedSteps}, the only one invalidated by the state animation.
+     */
+    private final Rect stateDirtyRect = new Rect();
+
+    /**
+     * Progress of each step set via {@link #setStepProgress(int, float)}, {@code null} until a progress is set.
+     */
+    private float[] stepProgress;
+    /**
+     * Progress posted by {@link #setStepProgress(int, float)} from any thread, not applied yet.
+     */
+    private volatile AtomicIntegerArray postedProgress = new AtomicIntegerArray(0);
+    /**
+     * {@code true} while {@link #applyPostedProgress} is scheduled for the next frame.
+     */
+    private final AtomicBoolean progressFrameScheduled = new AtomicBoolean();
+    /**
+     * Area of the steps whose progress changed in the current frame.
+     */
+    private final Rect progressDirtyRect = new Rect();
+
     private ViewPager pager;
     private Drawable doneIcon;
     private boolean showDoneIcon;
 
     // If viewpager is attached, viewpager's page titles are used when {@code showLabels} equals true
     private TextPaint labelPaint;
-    private CharSequence[] labels;
     private boolean showLabels;
     private float labelMarginTop;
     private float labelSize;
-    private StaticLayout[] labelLayouts;
+    /**
+     * Layouts of the labels, laid out on demand from the {@link LabelProvider}
+     */
+    private LabelLayoutCache labelLayouts;
+    /**
+     * Max number of lines of the labels, as measured by {@link #calculateMaxLabelHeight(int)}
+     */
+    private int labelLineCount;
     private float maxLabelHeight;
+    private final BitSet changedLabels = new BitSet();
+    private final BitSet laidOutLabels = new BitSet();
+
+    /**
+     * Range of steps drawn: the visible ones, and a margin around them. In a scrolling container, only the steps
+     * around the visible area are drawn and have their label laid out.
+     */
+    private int firstDrawnStep = 0, lastDrawnStep = STEP_INVALID;
+    private final Rect visibleRect = new Rect();
+    /**
+     * Redraws when scrolled beyond the drawn steps.
+     */
+    private final ViewTreeObserver.OnScrollChangedListener scrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    if ((firstDrawnStep == 0 && lastDrawnStep >= stepCount - 1) || !getLocalVisibleRect(visibleRect)) {
+                        // Every step is already drawn, or none is visible
+                        return;
+                    }
+                    ensureGeometry();
+                    if (geometry.getStepAt(visibleRect.left) < firstDrawnStep ||
+                            geometry.getStepAt(visibleRect.right) > lastDrawnStep) {
+                        updateDrawnSteps();
+                        if (showLabels && layOutDrawnLabels()) {
+                            // Newly drawn labels are higher than the measured ones
+                            requestLayout();
+                        } else {
+                            invalidate();
+                        }
+                    }
+                }
+            };
+
+    /**
+     * Positions of the steps before the running reflow, by step position after it, {@code null} when not reflowing.
+     *
+     * @see #startReflow(float[], float)
+     */
+    private float[] reflowFromX;
+    private float reflowFromLineLength;
+    /**
+     * Positions of the steps at the end of the running reflow
+     */
+    private float[] reflowToX = new float[0];
+    private float reflowToLineLength;
+    private float reflowProgress = 1f;
+    private ObjectAnimator reflowAnimator;
 
     // Running animations
     private AnimatorSet animatorSet;
     private ObjectAnimator lineAnimator, indicatorAnimator, checkAnimator;
+    /**
+     * Animators of the transitions to the next and to the previous step, reused by each transition
+     */
+    private TransitionAnimators forwardTransition, backwardTransition;
+    /**
+     * {@code true} to {@link #prewarm()} once the main thread is idle after the view is attached
+     */
+    private boolean prewarmOnIdle;
+    private boolean prewarmScheduled;
+    private final MessageQueue.IdleHandler prewarmIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            prewarmScheduled = false;
+            prewarm();
+            // Only once
+            return false;
+        }
+    };
+    /**
+     * {@code true} to run the transitions with the {@link SharedAnimationClock} instead of {@link #animatorSet}.
+     *
+     * @see #setSharedFrameClockEnabled(boolean)
+     */
+    private boolean sharedFrameClockEnabled;
+    /**
+     * {@code true} while the {@link SharedAnimationClock} runs a transition of this view, and the parts of the
+     * transition running in the current frame.
+     */
+    private boolean inClockTransition;
+    private boolean clockLineRunning, clockCheckRunning, clockIndicatorRunning;
+    private ObjectAnimator stateAnimator;
+    /**
+     * Steps of the transition run by {@link #animatorSet}, reported to the {@link OnStepChangeListener}s.
+     */
+    private int transitionFromStep, transitionToStep;
+    /**
+     * Start time of the running transition, in the {@link AnimationUtils#currentAnimationTimeMillis()} time base
+     */
+    private long transitionStartTime;
+    /**
+     * Play time already elapsed of the next transition, to resume a transition saved in the instance state
+     */
+    private long transitionResumeTime;
+    /**
+     * {@code true} while a transition saved in the instance state is started again
+     */
+    private boolean resumingTransition;
+    /**
+     * Area redrawn on each frame of the transition.
+     *
+     * @see #invalidateTransition()
+     */
+    private final Rect transitionDirtyRect = new Rect();
+    /**
+     * {@code true} to draw the view in a hardware layer while a transition is running.
+     *
+     * @see #setTransitionLayerEnabled(boolean)
+     */
+    private boolean transitionLayerEnabled = true;
+    /**
+     * {@code true} while the view is in the hardware layer set for the running transition
+     */
+    private boolean inTransitionLayer;
+    /**
+     * {@code true} while the running transition is cancelled to start a new one
+     */
+    private boolean restartingTransition;
+    /**
+     * Listener added to each {@link #animatorSet} to report the transition lifecycle.
+     */
+    private final AnimatorListenerAdapter transitionListener = new AnimatorListenerAdapter() {
+        private boolean cancelled;
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            cancelled = false;
+            onTransitionStarted();
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+            cancelled = true;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            onTransitionFinished(cancelled);
+        }
+    };
+
+    /**
+     * Number of nested {@link #beginUpdate()} calls not yet committed.
+     */
+    private int updateDepth;
+    /**
+     * Pending {@code UPDATE_*} flags to apply once the current update is committed.
+     */
+    private int pendingUpdates;
+    /**
+     * Step requested via {@link #setCurrentStep(int)} during an update, applied on commit.
+     */
+    private int pendingStep = STEP_INVALID;
+
+    /**
+     * Latest step given to {@link #postCurrentStep(int)} and not applied yet, or {@link #STEP_INVALID}.
+     */
+    private final AtomicInteger postedStep = new AtomicInteger(STEP_INVALID);
+    /**
+     * Applies {@link #postedStep} on the UI thread, scheduled at most once per frame.
+     */
+    private final Runnable applyPostedStep = new Runnable() {
+        @Override
+        public void run() {
+            final int step = postedStep.getAndSet(STEP_INVALID);
+            if (step != STEP_INVALID) {
+                // Step count may have changed since the step was posted
+                setCurrentStep(Math.min(step, stepCount));
+            }
+        }
+    };
+
+    /**
+     * Applies {@link #postedProgress} on the UI thread, scheduled at most once per frame.
+     */
+    private final Runnable applyPostedProgress = new Runnable() {
+        @Override
+        public void run() {
+            progressFrameScheduled.set(false);
+            final AtomicIntegerArray posted = postedProgress;
+            if (posted.length() != stepCount) {
+                // Steps changed since the progress was posted
+                return;
+            }
+
+            ensureGeometry();
+            progressDirtyRect.setEmpty();
+            for (int i = 0; i < posted.length(); i++) {
+                final int value = posted.getAndSet(i, NO_PROGRESS_POSTED);
+                if (value != NO_PROGRESS_POSTED) {
+                    applyStepProgress(i, (value - 1) / (float) PROGRESS_RESOLUTION);
+                }
+            }
+            if (!progressDirtyRect.isEmpty()) {
+                invalidate(progressDirtyRect);
+            }
+        }
+    };
 
     /**
      * Custom gesture listener though which all the touch events are propagated.
@@ -375,20 +767,12 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
         public boolean onSingleTapConfirmed(MotionEvent e) {
             int clickedStep = STEP_INVALID;
             if (isOnStepClickListenerAvailable()) {
-                for (int i = 0; i < stepsClickAreas.size(); i++) {
-                    if (stepsClickAreas.get(i).contains(e.getX(), e.getY())) {
-                        clickedStep = i;
-                        // Stop as we found the step which was clicked
-                        break;
-                    }
-                }
+                clickedStep = getClickedStep(e.getX(), e.getY());
             }
 
             // If the clicked step is valid and an listener was setup - send the event
             if (clickedStep != STEP_INVALID) {
-                for (OnStepClickListener listener : onStepClickListeners) {
-                    listener.onStepClicked(clickedStep);
-                }
+                dispatchStepClicked(clickedStep);
             }
 
             return super.onSingleTapConfirmed(e);
@@ -467,6 +851,10 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
         int defaultLineColor = ContextCompat.getColor(context, R.color.stpi_default_line_color);
         //noinspection UnnecessaryLocalVariable
         int defaultLineDoneColor = defaultPrimaryColor;
+        int defaultFailedColor = ContextCompat.getColor(context, R.color.stpi_default_failed_color);
+
+        // Apply all the XML configuration at once
+        beginUpdate();
 
         /* Customize the widget based on the properties set on XML, or use default if not provided */
         final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.StepperIndicator, defStyleAttr, 0);
@@ -515,6 +903,15 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
         indicatorPaint.setColor(a.getColor(R.styleable.StepperIndicator_stpi_indicatorColor, defaultIndicatorColor));
         indicatorPaint.setAntiAlias(true);
 
+        failedPaint = new Paint(indicatorPaint);
+        failedPaint.setColor(a.getColor(R.styleable.StepperIndicator_stpi_failedColor, defaultFailedColor));
+
+        progressPaint = new Paint(circlePaint);
+        progressPaint.setStrokeCap(Paint.Cap.ROUND);
+        progressPaint.setColor(a.getColor(R.styleable.StepperIndicator_stpi_progressColor, indicatorPaint.getColor()));
+        progressPaint.setStrokeWidth(a.getDimension(R.styleable.StepperIndicator_stpi_progressStrokeWidth,
+                                                    circlePaint.getStrokeWidth()));
+
         stepTextNumberPaint = new Paint(indicatorPaint);
         stepTextNumberPaint.setTextSize(getResources().getDimension(R.dimen.stpi_default_text_size));
 
@@ -579,35 +976,43 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
 
         lineDoneAnimatedPaint = new Paint(lineDonePaint);
 
+        lowDetailPaint = new Paint();
+        lowDetailPaint.setStyle(Paint.Style.FILL);
+
         // Check if we should use the bottom indicator instead of the bullet one
         useBottomIndicator = a.getBoolean(R.styleable.StepperIndicator_stpi_useBottomIndicator, false);
-        if (useBottomIndicator) {
-            // Get the default height(stroke width) for the bottom indicator
-            float defaultHeight = resources.getDimension(R.dimen.stpi_default_bottom_indicator_height);
+        // Always read the bottom indicator configuration, it can be enabled later via setUseBottomIndicator()
+        // Get the default height(stroke width) for the bottom indicator
+        float defaultHeight = resources.getDimension(R.dimen.stpi_default_bottom_indicator_height);
 
-            bottomIndicatorHeight = a
-                    .getDimension(R.styleable.StepperIndicator_stpi_bottomIndicatorHeight, defaultHeight);
+        bottomIndicatorHeight = a
+                .getDimension(R.styleable.StepperIndicator_stpi_bottomIndicatorHeight, defaultHeight);
 
-            if (bottomIndicatorHeight <= 0) {
-                Log.d(TAG, "init: Invalid indicator height, disabling bottom indicator feature! Please provide " +
-                        "a value greater than 0.");
-                useBottomIndicator = false;
-            }
+        if (useBottomIndicator && bottomIndicatorHeight <= 0) {
+            Log.d(TAG, "init: Invalid indicator height, disabling bottom indicator feature! Please provide " +
+                    "a value greater than 0.");
+            useBottomIndicator = false;
+        }
 
-            // Get the default width for the bottom indicator
-            float defaultWidth = resources.getDimension(R.dimen.stpi_default_bottom_indicator_width);
-            bottomIndicatorWidth = a.getDimension(R.styleable.StepperIndicator_stpi_bottomIndicatorWidth, defaultWidth);
+        // Get the default width for the bottom indicator
+        float defaultWidth = resources.getDimension(R.dimen.stpi_default_bottom_indicator_width);
+        bottomIndicatorWidth = a.getDimension(R.styleable.StepperIndicator_stpi_bottomIndicatorWidth, defaultWidth);
 
-            // Get the default top margin for the bottom indicator
-            float defaultTopMargin = resources.getDimension(R.dimen.stpi_default_bottom_indicator_margin_top);
-            bottomIndicatorMarginTop = a
-                    .getDimension(R.styleable.StepperIndicator_stpi_bottomIndicatorMarginTop, defaultTopMargin);
+        // Get the default top margin for the bottom indicator
+        float defaultTopMargin = resources.getDimension(R.dimen.stpi_default_bottom_indicator_margin_top);
+        bottomIndicatorMarginTop = a
+                .getDimension(R.styleable.StepperIndicator_stpi_bottomIndicatorMarginTop, defaultTopMargin);
 
-            useBottomIndicatorWithStepColors = a
-                    .getBoolean(R.styleable.StepperIndicator_stpi_useBottomIndicatorWithStepColors, false);
-        }
+        useBottomIndicatorWithStepColors = a
+                .getBoolean(R.styleable.StepperIndicator_stpi_useBottomIndicatorWithStepColors, false);
 
         circleRadius = a.getDimension(R.styleable.StepperIndicator_stpi_circleRadius, defaultCircleRadius);
+        optionalCirclePaint = new Paint(circlePaint);
+        // 8 dashes around the circle
+        float dashLength = (float) (2 * Math.PI * circleRadius / 16);
+        optionalCirclePaint.setPathEffect(new DashPathEffect(new float[]{dashLength, dashLength}, 0));
+        highlightPaint = new Paint(indicatorPaint);
+        highlightPaint.setStyle(Paint.Style.FILL);
         checkRadius = circleRadius + circlePaint.getStrokeWidth() / 2f;
         indicatorRadius = a.getDimension(R.styleable.StepperIndicator_stpi_indicatorRadius, defaultIndicatorRadius);
         animIndicatorRadius = indicatorRadius;
@@ -616,6 +1021,7 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
 
         animDuration = a.getInteger(R.styleable.StepperIndicator_stpi_animDuration, DEFAULT_ANIMATION_DURATION);
         showDoneIcon = a.getBoolean(R.styleable.StepperIndicator_stpi_showDoneIcon, true);
+        prewarmOnIdle = a.getBoolean(R.styleable.StepperIndicator_stpi_prewarmOnIdle, false);
         doneIcon = a.getDrawable(R.styleable.StepperIndicator_stpi_doneIconDrawable);
 
         // Labels Configuration
@@ -625,12 +1031,14 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
         float defaultLabelSize = resources.getDimension(R.dimen.stpi_default_label_size);
         labelSize = a.getDimension(R.styleable.StepperIndicator_stpi_labelSize, defaultLabelSize);
         labelPaint.setTextSize(labelSize);
+        labelLayouts = new LabelLayoutCache(labelPaint);
 
         float defaultLabelMarginTop = resources.getDimension(R.dimen.stpi_default_label_margin_top);
         labelMarginTop = a.getDimension(R.styleable.StepperIndicator_stpi_labelMarginTop, defaultLabelMarginTop);
 
         showLabels(a.getBoolean(R.styleable.StepperIndicator_stpi_showLabels, false));
-        setLabels(a.getTextArray(R.styleable.StepperIndicator_stpi_labels));
+        CharSequence[] labels = a.getTextArray(R.styleable.StepperIndicator_stpi_labels);
+        setLabels(labels);
 
         if (a.hasValue(R.styleable.StepperIndicator_stpi_labelColor)) {
             setLabelColor(a.getColor(R.styleable.StepperIndicator_stpi_labelColor, 0));
@@ -640,6 +1048,7 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
 
         if (isInEditMode() && showLabels && labels == null) {
             labels = new CharSequence[]{"First", "Second", "Third", "Fourth", "Fifth"};
+            labelLayouts.setProvider(new ArrayLabelProvider(labels));
         }
 
         if (!a.hasValue(R.styleable.StepperIndicator_stpi_stepCount) && labels != null) {
@@ -663,6 +1072,10 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
 
         // Initialize the gesture detector, setup with our custom gesture listener
         gestureDetector = new GestureDetector(getContext(), gestureListener);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        ViewCompat.setAccessibilityDelegate(this, accessibilityHelper);
+
+        commitUpdate();
     }
 
     /**
@@ -693,19 +1106,128 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
     public boolean onTouchEvent(MotionEvent event) {
         // Dispatch the touch events to our custom gesture detector.
         gestureDetector.onTouchEvent(event);
+        if (onStepScrubListeners.length > 0) {
+            onScrubTouchEvent(event);
+        }
         return true; // we handle the event in the gesture detector
     }
 
+    /**
+     * Track the step under the finger once it moved horizontally further than the touch slop. Only the last
+     * position of each event is hit-tested, against the step positions: nothing is allocated per event.
+     */
+    private void onScrubTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                scrubDownX = event.getX();
+                scrubDownY = event.getY();
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (stepCount <= 0) {
+                    break;
+                }
+                if (scrubStep == STEP_INVALID) {
+                    final float dx = Math.abs(event.getX() - scrubDownX);
+                    if (dx < touchSlop || dx <= Math.abs(event.getY() - scrubDownY)) {
+                        // Not a horizontal drag (yet), a scrolling parent can still take the gesture
+                        break;
+                    }
+                    // A scrolling parent would steal the drag
+                    if (getParent() != null) {
+                        getParent().requestDisallowInterceptTouchEvent(true);
+                    }
+                }
+                ensureGeometry();
+                final int step = geometry.getStepAt(event.getX());
+                if (scrubStep == STEP_INVALID) {
+                    scrubStep = step;
+                    invalidateStepArea(step);
+                    dispatchScrubStarted(step);
+                } else if (step != scrubStep) {
+                    final int previousStep = scrubStep;
+                    scrubStep = step;
+                    invalidateStepArea(previousStep);
+                    invalidateStepArea(step);
+                    dispatchScrubStepChanged(previousStep, step);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                endScrub(false);
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                endScrub(true);
+                break;
+        }
+    }
+
+    /**
+     * End the scrubbing, if any.
+     *
+     * @param cancelled {@code true} if the gesture was cancelled instead of the finger going up
+     */
+    private void endScrub(boolean cancelled) {
+        if (scrubStep == STEP_INVALID) {
+            return;
+        }
+        final int step = scrubStep;
+        scrubStep = STEP_INVALID;
+        invalidateStepArea(step);
+        dispatchScrubEnded(step, cancelled);
+    }
+
+    /**
+     * Redraw the touch area of the step.
+     */
+    private void invalidateStepArea(int step) {
+        if (step >= geometry.stepCount) {
+            invalidate();
+            return;
+        }
+        final RectF area = getStepClickArea(step);
+        invalidate((int) area.left, (int) area.top, (int) Math.ceil(area.right), (int) Math.ceil(area.bottom));
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        // Touch exploration of the steps
+        return accessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        return accessibilityHelper.dispatchKeyEvent(event) || super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, @Nullable Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        accessibilityHelper.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+    }
+
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        compute(); // for setting up the indicator based on the new position
+        geometryDirty = true; // for setting up the indicator based on the new position
+    }
+
+    /**
+     * Compute the steps positions if they were invalidated since the last computation.
+     * <p>
+     * Call this before using any of the computed positions (drawing, hit-testing, animations).
+     * </p>
+     */
+    private void ensureGeometry() {
+        if (geometryDirty) {
+            geometryDirty = false;
+            compute();
+        }
     }
 
     /**
      * Make calculations for establishing the exact positions of each step component, for the line dividers, for
      * bottom indicators, etc.
      * <p>
-     * Call this whenever there is an layout change for the widget.
+     * Do not call directly, flag the geometry as dirty instead and let {@link #ensureGeometry()} run it once before
+     * the next draw or hit-test.
      * </p>
      */
     private void compute() {
@@ -714,8 +1236,8 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
                                                        "before calling compute() method!");
         }
 
-        indicators = new float[stepCount];
-        linePathList.clear();
+        // Only the bounds of the steps change, their descriptions are kept
+        accessibilityHelper.invalidateBounds();
 
         float startX = circleRadius * EXPAND_MARK + circlePaint.getStrokeWidth() / 2f;
         if (useBottomIndicator) {
@@ -727,63 +1249,92 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
             startX = gridWidth / 2F;
         }
 
-        // Compute position of indicators and line length
-        float divider = (getMeasuredWidth() - startX * 2f) / (stepCount - 1);
-        lineLength = divider - (circleRadius * 2f + circlePaint.getStrokeWidth()) - (lineMargin * 2);
-
         // Compute position of circles and lines once
-        for (int i = 0; i < indicators.length; i++) {
-            indicators[i] = startX + divider * i;
+        geometry.compute(stepCount, getMeasuredWidth(), getHeight(), startX,
+                         circleRadius * 2f + circlePaint.getStrokeWidth(), lineMargin,
+                         getStepCenterY(), getHeight() - getBottomIndicatorHeight() - maxLabelHeight);
+        updateLinePaths();
+
+        if (reflowFromX != null) {
+            if (reflowFromX.length == stepCount && !geometry.lowDetail) {
+                // The computed positions are the end of the running reflow
+                if (reflowToX.length < stepCount) {
+                    reflowToX = new float[stepCount];
+                }
+                System.arraycopy(geometry.stepX, 0, reflowToX, 0, stepCount);
+                reflowToLineLength = geometry.lineLength;
+                applyReflow();
+            } else {
+                cancelReflow();
+            }
+        }
+    }
+
+    /**
+     * Update the path of each line from the computed positions, reusing the existing paths.
+     */
+    private void updateLinePaths() {
+        final int lineCount = geometry.lowDetail ? 0 : stepCount - 1;
+        while (linePathList.size() > lineCount) {
+            linePathList.remove(linePathList.size() - 1);
         }
-        for (int i = 0; i < indicators.length - 1; i++) {
-            float position = ((indicators[i] + indicators[i + 1]) / 2) - lineLength / 2;
-            final Path linePath = new Path();
-            float lineY = getStepCenterY();
+        while (linePathList.size() < lineCount) {
+            linePathList.add(new Path());
+        }
+        final float lineY = geometry.centerY;
+        for (int i = 0; i < lineCount; i++) {
+            final Path linePath = linePathList.get(i);
+            final float position = geometry.lineStartX[i];
+            linePath.reset();
             linePath.moveTo(position, lineY);
-            linePath.lineTo(position + lineLength, lineY);
-            linePathList.add(linePath);
+            linePath.lineTo(position + geometry.lineLength, lineY);
         }
-
-        computeStepsClickAreas(); // update the position of the steps click area also
     }
 
     /**
      * <p>
      * Calculate the area for each step. This ensure the correct step is detected when an click event is detected.
      * </p>
-     * <p>
-     * Whenever {@link #compute()} method is called, make sure to call this method also so that the steps click
-     * area is updated.
-     * </p>
+     *
+     * @deprecated the click area of a step is now derived from its position when needed, this only makes sure the
+     * positions of the steps are computed.
      */
+    @Deprecated
+    @SuppressWarnings("unused")
     public void computeStepsClickAreas() {
         if (stepCount == STEP_INVALID) {
             throw new IllegalArgumentException("stepCount wasn't setup yet. Make sure you call setStepCount() " +
                                                        "before computing the steps click area!");
         }
 
-        if (null == indicators) {
-            throw new IllegalArgumentException("indicators wasn't setup yet. Make sure the indicators are " +
-                                                       "initialized and setup correctly before trying to compute the click " +
-                                                       "area for each step!");
-        }
-
-        // Initialize the list for the steps click area
-        stepsClickAreas = new ArrayList<>(stepCount);
+        ensureGeometry();
+    }
 
-        // Compute the clicked area for each step
-        for (float indicator : indicators) {
-            // Get the indicator position
-            // Calculate the bounds for the step
-            float left = indicator - circleRadius * 2;
-            float right = indicator + circleRadius * 2;
-            float top = getStepCenterY() - circleRadius * 2;
-            float bottom = getStepCenterY() + circleRadius + getBottomIndicatorHeight();
+    /**
+     * Get the area of the step detecting the clicks, around its position. The positions must be computed.
+     *
+     * @param step step position
+     * @return the click area of the step, only valid until the next call
+     */
+    private RectF getStepClickArea(int step) {
+        final float indicator = geometry.stepX[step];
+        stepClickArea.set(indicator - circleRadius * 2, geometry.centerY - circleRadius * 2,
+                          indicator + circleRadius * 2, geometry.centerY + circleRadius + getBottomIndicatorHeight());
+        return stepClickArea;
+    }
 
-            // Store the click area for the step
-            RectF area = new RectF(left, top, right, bottom);
-            stepsClickAreas.add(area);
+    /**
+     * Find the clicked step: only the step closest to the position is tested, whatever the number of steps.
+     *
+     * @return the step whose click area contains the position, or {@link #STEP_INVALID}
+     */
+    private int getClickedStep(float x, float y) {
+        ensureGeometry();
+        if (geometry.stepCount <= 0) {
+            return STEP_INVALID;
         }
+        final int step = geometry.getStepAt(x);
+        return getStepClickArea(step).contains(x, y) ? step : STEP_INVALID;
     }
 
     /**
@@ -819,131 +1370,173 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
 
         if (gridWidth <= 0) return;
 
-        // Compute StaticLayout for the labels
-        labelLayouts = new StaticLayout[labels.length];
-        maxLabelHeight = 0F;
-        float labelSingleLineHeight = labelPaint.descent() - labelPaint.ascent();
-        for (int i = 0; i < labels.length; i++) {
-            if (labels[i] == null) continue;
+        labelLayouts.setWidth(gridWidth);
+        // Pick up the layouts taken from the view this one was restored from, if any
+        labelLayouts.restore();
+        if (lastDrawnStep == STEP_INVALID) {
+            // Not drawn yet, at most the width of the screen is visible, with half of it as margin on each side
+            final int screenWidth = getResources().getDisplayMetrics().widthPixels;
+            lastDrawnStep = Math.min(stepCount - 1, (int) (2f * screenWidth * stepCount / measuredWidth));
+        }
+
+        // Lay out the labels of the drawn steps only, the others are laid out when they get drawn
+        layOutDrawnLabels();
+        labelLineCount = labelLayouts.getMaxLineCount();
+
+        final float previousMaxLabelHeight = maxLabelHeight;
+        maxLabelHeight = labelLineCount * (labelPaint.descent() - labelPaint.ascent());
+        if (maxLabelHeight != previousMaxLabelHeight) {
+            // Steps and labels are positioned based on the labels height
+            geometryDirty = true;
+        }
+    }
 
-            labelLayouts[i] = new StaticLayout(labels[i], labelPaint, gridWidth,
-                                               Layout.Alignment.ALIGN_NORMAL, 1, 0, false);
-            maxLabelHeight = Math.max(maxLabelHeight, labelLayouts[i].getLineCount() * labelSingleLineHeight);
+    /**
+     * Lay out the labels of the drawn steps which are not laid out yet, before they are drawn.
+     *
+     * @return {@code true} if some labels are higher than the measured ones, the view must be measured again
+     */
+    private boolean layOutDrawnLabels() {
+        final int lastStep = Math.min(lastDrawnStep, stepCount - 1);
+        labelLayouts.setCapacity(lastStep - firstDrawnStep + 1);
+        laidOutLabels.clear();
+        labelLayouts.layout(firstDrawnStep, lastStep, laidOutLabels);
+        for (int i = laidOutLabels.nextSetBit(0); i >= 0; i = laidOutLabels.nextSetBit(i + 1)) {
+            accessibilityHelper.onLabelLaidOut(i);
         }
+        return labelLayouts.getMaxLineCount() > labelLineCount;
     }
 
     private float getStepCenterY() {
         return (getMeasuredHeight() - getBottomIndicatorHeight() - getMaxLabelHeight()) / 2f;
     }
 
-    @SuppressWarnings("ConstantConditions")
     @Override
     protected void onDraw(Canvas canvas) {
-        float centerY = getStepCenterY();
+        ensureGeometry();
+        updateDrawnSteps();
+        updateRenderState();
 
-        // Currently Drawing animation from step n-1 to n, or back from n+1 to n
-        boolean inAnimation = animatorSet != null && animatorSet.isRunning();
-        boolean inLineAnimation = lineAnimator != null && lineAnimator.isRunning();
-        boolean inIndicatorAnimation = indicatorAnimator != null && indicatorAnimator.isRunning();
-        boolean inCheckAnimation = checkAnimator != null && checkAnimator.isRunning();
-
-        boolean drawToNext = previousStep == currentStep - 1;
-        boolean drawFromNext = previousStep == currentStep + 1;
-
-        for (int i = 0; i < indicators.length; i++) {
-            final float indicator = indicators[i];
-
-            // We draw the "done" check if previous step, or if we are going back (if going back, animated value will reduce radius to 0)
-            boolean drawCheck = i < currentStep || (drawFromNext && i == currentStep);
-
-            // Draw back circle
-            canvas.drawCircle(indicator, centerY, circleRadius, getStepCirclePaint(i));
-
-            // Draw the step number inside the back circle if the flag for this is set to true
-            if (showStepTextNumber) {
-                final String stepLabel = String.valueOf(i + 1);
-
-                stepAreaRect.set((int) (indicator - circleRadius), (int) (centerY - circleRadius),
-                                 (int) (indicator + circleRadius), (int) (centerY + circleRadius));
-                stepAreaRectF.set(stepAreaRect);
-
-                Paint stepTextNumberPaint = getStepTextNumberPaint(i);
-
-                // measure text width
-                stepAreaRectF.right = stepTextNumberPaint.measureText(stepLabel, 0, stepLabel.length());
-                // measure text height
-                stepAreaRectF.bottom = stepTextNumberPaint.descent() - stepTextNumberPaint.ascent();
-
-                stepAreaRectF.left += (stepAreaRect.width() - stepAreaRectF.right) / 2.0f;
-                stepAreaRectF.top += (stepAreaRect.height() - stepAreaRectF.bottom) / 2.0f;
+        canvasRenderer.canvas = canvas;
+        canvasRenderer.render(geometry, renderState);
+        canvasRenderer.canvas = null;
+    }
 
-                canvas.drawText(stepLabel, stepAreaRectF.left, stepAreaRectF.top - stepTextNumberPaint.ascent(),
-                                stepTextNumberPaint);
+    /**
+     * Update the range of steps to draw: the visible ones, with half the visible width as margin on each side so
+     * that scrolling a bit does not require a redraw.
+     */
+    private void updateDrawnSteps() {
+        if (geometry.lowDetail) {
+            firstDrawnStep = 0;
+            lastDrawnStep = stepCount - 1;
+            return;
+        }
+        if (!getLocalVisibleRect(visibleRect)) {
+            if (lastDrawnStep != STEP_INVALID) {
+                // Not visible, keep the last range
+                return;
             }
+            visibleRect.set(0, 0, getResources().getDisplayMetrics().widthPixels, getHeight());
+        }
+        final int margin = visibleRect.width() / 2;
+        firstDrawnStep = geometry.getStepAt(visibleRect.left - margin);
+        lastDrawnStep = geometry.getStepAt(visibleRect.right + margin);
+        labelLayouts.setCapacity(lastDrawnStep - firstDrawnStep + 1);
+    }
 
-            if (showLabels && labelLayouts != null &&
-                    i < labelLayouts.length && labelLayouts[i] != null) {
-                drawLayout(labelLayouts[i],
-                           indicator, getHeight() - getBottomIndicatorHeight() - maxLabelHeight,
-                           canvas, labelPaint);
-            }
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(scrollChangedListener);
+        if (prewarmOnIdle) {
+            schedulePrewarm();
+        }
 
-            if (useBottomIndicator) {
-                // Show the current step indicator as bottom line
-                if (i == currentStep) {
-                    // Draw custom indicator for current step only
-                    canvas.drawRect(indicator - bottomIndicatorWidth / 2, getHeight() - bottomIndicatorHeight,
-                                    indicator + bottomIndicatorWidth / 2, getHeight(),
-                                    useBottomIndicatorWithStepColors ? getStepIndicatorPaint(i) : indicatorPaint);
-                }
-            } else {
-                // Show the current step indicator as bullet
-                // If current step, or coming back from next step and still animating
-                if ((i == currentStep && !drawFromNext) || (i == previousStep && drawFromNext && inAnimation)) {
-                    // Draw animated indicator
-                    canvas.drawCircle(indicator, centerY, animIndicatorRadius, getStepIndicatorPaint(i));
-                }
+        final LabelProvider provider = labelLayouts.getProvider();
+        if (provider instanceof PagerLabelProvider) {
+            // Titles may have changed while detached
+            ((PagerLabelProvider) provider).register();
+            notifyLabelsChanged();
+        }
+        if (pager != null) {
+            ViewPagerSyncHub.attach(pager, this);
+            // Catch up with the pages selected while detached
+            final int page = pager.getCurrentItem();
+            if (page != currentStep && page <= stepCount) {
+                setCurrentStep(page);
             }
+        }
+        if (postedStep.get() != STEP_INVALID) {
+            // Before API 24, a runnable posted while detached may never run: schedule it again, the slot stays
+            // taken until it is applied
+            removeCallbacks(applyPostedStep);
+            ViewCompat.postOnAnimation(this, applyPostedStep);
+        }
+    }
 
-            // Draw check mark
-            if (drawCheck) {
-                float radius = checkRadius;
-                // Use animated radius value?
-                if ((i == previousStep && drawToNext) || (i == currentStep && drawFromNext)) radius = animCheckRadius;
-                canvas.drawCircle(indicator, centerY, radius, getStepIndicatorPaint(i));
-
-                // Draw check bitmap
-                if (!isInEditMode() && showDoneIcon) {
-                    if ((i != previousStep && i != currentStep) ||
-                            (!inCheckAnimation && !(i == currentStep && !inAnimation))) {
-                        canvas.save();
-                        canvas.translate(indicator - (doneIcon.getIntrinsicWidth() / 2),
-                                         centerY - (doneIcon.getIntrinsicHeight() / 2));
-                        doneIcon.draw(canvas);
-                        canvas.restore();
-                    }
-                }
-            }
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnScrollChangedListener(scrollChangedListener);
+        cancelPrewarm();
+        endScrub(true);
+        if (inClockTransition) {
+            // The shared clock strongly references the running transitions, it must never keep a detached view
+            SharedAnimationClock.getInstance().cancel(this);
+            onSharedClockFrame(1f, 1f, 1f, true);
+        }
+        // The pager and its adapter must not keep the view alive
+        if (pager != null) {
+            ViewPagerSyncHub.detach(pager, this);
+        }
+        final LabelProvider provider = labelLayouts.getProvider();
+        if (provider instanceof PagerLabelProvider) {
+            ((PagerLabelProvider) provider).unregister();
+        }
+        super.onDetachedFromWindow();
+    }
 
-            // Draw lines
-            if (i < linePathList.size()) {
-                if (i >= currentStep) {
-                    canvas.drawPath(linePathList.get(i), linePaint);
-                    if (i == currentStep && drawFromNext && (inLineAnimation || inIndicatorAnimation)) {
-                        // Coming back from n+1
-                        canvas.drawPath(linePathList.get(i), lineDoneAnimatedPaint);
-                    }
-                } else {
-                    if (i == currentStep - 1 && drawToNext && inLineAnimation) {
-                        // Going to n+1
-                        canvas.drawPath(linePathList.get(i), linePaint);
-                        canvas.drawPath(linePathList.get(i), lineDoneAnimatedPaint);
-                    } else {
-                        canvas.drawPath(linePathList.get(i), lineDonePaint);
-                    }
-                }
-            }
+    /**
+     * Fill {@link #renderState} with the current state of the widget.
+     */
+    private void updateRenderState() {
+        final StepperRenderState state = renderState;
+        state.currentStep = currentStep;
+        state.previousStep = previousStep;
+        state.firstStep = firstDrawnStep;
+        state.lastStep = lastDrawnStep;
+
+        // Currently Drawing animation from step n-1 to n, or back from n+1 to n
+        state.inAnimation = isTransitionRunning();
+        if (inClockTransition) {
+            state.inLineAnimation = clockLineRunning;
+            state.inIndicatorAnimation = clockIndicatorRunning;
+            state.inCheckAnimation = clockCheckRunning;
+        } else {
+            state.inLineAnimation = lineAnimator != null && lineAnimator.isRunning();
+            state.inIndicatorAnimation = indicatorAnimator != null && indicatorAnimator.isRunning();
+            state.inCheckAnimation = checkAnimator != null && checkAnimator.isRunning();
         }
+        state.animIndicatorRadius = animIndicatorRadius;
+        state.animCheckRadius = animCheckRadius;
+        state.animStateProgress = animStateProgress;
+
+        state.stepStates = stepStates;
+        state.stateChangedSteps = stateChangedSteps;
+        state.stepProgress = stepProgress;
+        state.highlightedStep = scrubStep;
+
+        state.showStepTextNumber = showStepTextNumber;
+        state.showLabels = showLabels;
+        state.showDoneIcon = showDoneIcon && doneIcon != null && !isInEditMode();
+        state.useBottomIndicator = useBottomIndicator;
+        state.useBottomIndicatorWithStepColors = useBottomIndicatorWithStepColors;
+
+        state.circleRadius = circleRadius;
+        state.checkRadius = checkRadius;
+        state.indicatorRadius = indicatorRadius;
+        state.bottomIndicatorWidth = bottomIndicatorWidth;
+        state.bottomIndicatorHeight = bottomIndicatorHeight;
     }
 
     /**
@@ -1075,15 +1668,247 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
         return stepCount;
     }
 
+    /**
+     * Set the number of steps. The current step goes back to the first one, and the step states and progress are
+     * cleared, even if the number of steps is unchanged (the positions are then not computed again).
+     *
+     * @param stepCount number of steps, at least 2
+     */
     public void setStepCount(int stepCount) {
         if (stepCount < 2) {
             throw new IllegalArgumentException("stepCount must be >= 2");
         }
+        final boolean countChanged = this.stepCount != stepCount;
 
         this.stepCount = stepCount;
         currentStep = 0;
-        compute();
-        invalidate();
+        pendingStep = STEP_INVALID;
+        cancelReflow();
+        resetStepStates();
+        resetStepProgress();
+        accessibilityHelper.invalidateSteps();
+        if (!countChanged) {
+            // Same positions, only the steps are reset
+            requestUpdate(UPDATE_DRAW);
+            return;
+        }
+        // Labels grid width depends on the number of steps, so may their height
+        requestUpdate(showLabels ? UPDATE_COMPUTE | UPDATE_LAYOUT : UPDATE_COMPUTE);
+    }
+
+    /**
+     * Add a step after the last one.
+     *
+     * @see #insertStep(int)
+     */
+    @UiThread
+    public void appendStep() {
+        insertStep(stepCount);
+    }
+
+    /**
+     * Insert a step at the given position, in the default state.
+     * <p>
+     * Unlike {@link #setStepCount(int)}, the other steps keep their state: the current step, the states, the progress
+     * and the laid out labels move with their step, and the steps slide to their new position. The label provider
+     * must already return the labels at their new position.
+     * </p>
+     * <p>
+     * Inserting a step at the current step pushes the current step, unless every step is done: the new step then
+     * becomes the current one.
+     * </p>
+     *
+     * @param position position of the new step, between 0 and stepCount (inclusive)
+     */
+    @UiThread
+    public void insertStep(int position) {
+        if (position < 0 || position > stepCount) {
+            throw new IllegalArgumentException("Invalid step position " + position);
+        }
+
+        final float[] fromX = getReflowStart();
+        if (fromX != null) {
+            // The new step comes out of the step it is inserted before
+            final float[] positions = new float[stepCount + 1];
+            System.arraycopy(fromX, 0, positions, 0, position);
+            positions[position] = fromX[Math.min(position, stepCount - 1)];
+            System.arraycopy(fromX, position, positions, position + 1, stepCount - position);
+            reflowFromX = positions;
+        }
+
+        beforeStepsChanged();
+        final int previousStepCount = stepCount;
+        stepCount++;
+        if (position < currentStep || (position == currentStep && currentStep < previousStepCount)) {
+            currentStep++;
+        }
+        previousStep = currentStep;
+
+        if (stepStates != null) {
+            stepStates = stepStates.insertStep(position);
+        }
+        if (stepProgress != null) {
+            final float[] progress = new float[stepCount];
+            System.arraycopy(stepProgress, 0, progress, 0, position);
+            System.arraycopy(stepProgress, position, progress, position + 1, previousStepCount - position);
+            stepProgress = progress;
+        }
+        labelLayouts.shift(position, 1);
+        afterStepsChanged(fromX != null);
+    }
+
+    /**
+     * Remove the step at the given position.
+     * <p>
+     * Unlike {@link #setStepCount(int)}, the other steps keep their state: the current step, the states, the progress
+     * and the laid out labels move with their step, and the steps slide to their new position. The label provider
+     * must already return the labels at their new position.
+     * </p>
+     * <p>
+     * Removing the current step makes the next step the current one.
+     * </p>
+     *
+     * @param position position of the step to remove, between 0 (inclusive) and stepCount (exclusive)
+     */
+    @UiThread
+    public void removeStep(int position) {
+        if (position < 0 || position >= stepCount) {
+            throw new IllegalArgumentException("Invalid step position " + position);
+        }
+        if (stepCount <= 2) {
+            throw new IllegalStateException("stepCount must be >= 2");
+        }
+
+        final float[] fromX = getReflowStart();
+        if (fromX != null) {
+            final float[] positions = new float[stepCount - 1];
+            System.arraycopy(fromX, 0, positions, 0, position);
+            System.arraycopy(fromX, position + 1, positions, position, positions.length - position);
+            reflowFromX = positions;
+        }
+
+        beforeStepsChanged();
+        stepCount--;
+        if (position < currentStep) {
+            currentStep--;
+        }
+        previousStep = currentStep;
+
+        if (stepStates != null) {
+            stepStates = stepStates.removeStep(position);
+        }
+        if (stepProgress != null) {
+            final float[] progress = new float[stepCount];
+            System.arraycopy(stepProgress, 0, progress, 0, position);
+            System.arraycopy(stepProgress, position + 1, progress, position, stepCount - position);
+            stepProgress = progress;
+        }
+        labelLayouts.remove(position);
+        labelLayouts.shift(position + 1, -1);
+        afterStepsChanged(fromX != null);
+    }
+
+    /**
+     * @return the current positions of the steps, to start a reflow from, or {@code null} if the steps are not
+     * laid out or should not be animated
+     */
+    @Nullable
+    private float[] getReflowStart() {
+        if (getMeasuredWidth() <= 0 || getAnimationQuality() == ANIMATION_QUALITY_MINIMAL) {
+            return null;
+        }
+        ensureGeometry();
+        if (geometry.lowDetail) {
+            return null;
+        }
+        reflowFromLineLength = geometry.lineLength;
+        // The positions of a running reflow, so that it goes on from where the steps are
+        return Arrays.copyOf(geometry.stepX, stepCount);
+    }
+
+    /**
+     * Finish the animations of the steps before they move.
+     */
+    private void beforeStepsChanged() {
+        if (animatorSet != null) {
+            animatorSet.end();
+        }
+        if (inClockTransition) {
+            SharedAnimationClock.getInstance().cancel(this);
+            onSharedClockFrame(1f, 1f, 1f, true);
+        }
+        if (stateAnimator != null) {
+            stateAnimator.end();
+        }
+        stateChangedSteps.clear();
+        stateDirtyRect.setEmpty();
+        // Apply the progress posted for the previous steps
+        if (progressFrameScheduled.get()) {
+            applyPostedProgress.run();
+        }
+    }
+
+    /**
+     * Update what depends on the number of steps after a step was inserted or removed.
+     *
+     * @param reflow {@code true} to animate the steps from {@link #reflowFromX} to their new position
+     */
+    private void afterStepsChanged(boolean reflow) {
+        pendingStep = STEP_INVALID;
+        // The app's instance no longer matches the steps
+        submittedStates = null;
+        postedProgress = new AtomicIntegerArray(stepCount);
+        // Descriptions mention the number of steps
+        accessibilityHelper.invalidateSteps();
+        // Computed for the new number of steps before the first frame of the reflow
+        geometryDirty = true;
+        if (reflow) {
+            startReflow();
+        } else {
+            cancelReflow();
+        }
+        // Labels grid width depends on the number of steps, so may their height
+        requestUpdate(showLabels ? UPDATE_COMPUTE | UPDATE_LAYOUT : UPDATE_COMPUTE);
+    }
+
+    /**
+     * Animate the steps from {@link #reflowFromX} to the positions computed for the new number of steps.
+     */
+    private void startReflow() {
+        if (reflowAnimator == null) {
+            reflowAnimator = ObjectAnimator.ofFloat(StepperIndicator.this, "reflowProgress", 0f, 1f);
+            reflowAnimator.setInterpolator(new DecelerateInterpolator());
+        } else {
+            reflowAnimator.cancel();
+        }
+        reflowProgress = 0f;
+        reflowAnimator.setDuration(Math.min(500, animDuration));
+        reflowAnimator.start();
+    }
+
+    private void cancelReflow() {
+        if (reflowAnimator != null) {
+            reflowAnimator.cancel();
+        }
+        if (reflowFromX != null) {
+            reflowFromX = null;
+            reflowProgress = 1f;
+            geometryDirty = true;
+        }
+    }
+
+    /**
+     * Move the steps and lines to their position at the current progress of the reflow.
+     */
+    private void applyReflow() {
+        final float progress = reflowProgress;
+        for (int i = 0; i < stepCount; i++) {
+            geometry.stepX[i] = reflowFromX[i] + (reflowToX[i] - reflowFromX[i]) * progress;
+        }
+        geometry.version++;
+        geometry.lineLength = reflowFromLineLength + (reflowToLineLength - reflowFromLineLength) * progress;
+        geometry.computeLineStarts();
+        updateLinePaths();
     }
 
     @SuppressWarnings("unused")
@@ -1093,6 +1918,10 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
 
     /**
      * Sets the current step
+     * <p>
+     * If called between {@link #beginUpdate()} and {@link #commitUpdate()}, the step is only applied (and animated) on
+     * commit, and only the last requested step is used.
+     * </p>
      *
      * @param currentStep a value between 0 (inclusive) and stepCount (inclusive)
      */
@@ -1101,319 +1930,1951 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
         if (currentStep < 0 || currentStep > stepCount) {
             throw new IllegalArgumentException("Invalid step value " + currentStep);
         }
+        if (updateDepth > 0) {
+            pendingStep = currentStep;
+            return;
+        }
+
+        startStepTransition(currentStep);
+        invalidate();
+    }
+
+    /**
+     * Sets the current step from any thread.
+     * <p>
+     * The step is applied on the UI thread on the next frame. If several steps are posted before then, only the last
+     * one is applied, with a single transition. No lock is taken and nothing is allocated per call.
+     * </p>
+     * <p>
+     * The step count is only known on the UI thread, so the upper bound is not checked here: a step above the step
+     * count when it is applied is clamped to the step count (all steps done). If the view is detached, the step is
+     * applied once it is attached again.
+     * </p>
+     *
+     * @param currentStep a value between 0 (inclusive) and stepCount (inclusive), greater values are clamped
+     * @see #setCurrentStep(int)
+     */
+    @AnyThread
+    public void postCurrentStep(int currentStep) {
+        if (currentStep < 0) {
+            throw new IllegalArgumentException("Invalid step value " + currentStep);
+        }
+        if (postedStep.getAndSet(currentStep) == STEP_INVALID) {
+            // First step posted since the last one was applied, schedule a single frame callback
+            ViewCompat.postOnAnimation(this, applyPostedStep);
+        }
+    }
+
+    /**
+     * Move to the given step, starting the transition animation if the step is adjacent to the current one.
+     * <p>
+     * Does not invalidate the view, this is left to the caller.
+     * </p>
+     *
+     * @param currentStep a value between 0 (inclusive) and stepCount (inclusive)
+     */
+    private void startStepTransition(int currentStep) {
+        if (this.currentStep == currentStep) {
+            // Nothing to animate, keep any running transition to this step going
+            return;
+        }
 
         previousStep = this.currentStep;
         this.currentStep = currentStep;
 
-        // Cancel any running animations
-        if (animatorSet != null) {
-            animatorSet.cancel();
+        // Cancel any running animations, keeping the transition layer for the next one
+        if (animatorSet != null || inClockTransition) {
+            restartingTransition = true;
+            if (animatorSet != null) {
+                animatorSet.cancel();
+            }
+            if (inClockTransition) {
+                SharedAnimationClock.getInstance().cancel(this);
+                inClockTransition = false;
+                onTransitionFinished(true);
+            }
+            restartingTransition = false;
         }
 
         animatorSet = null;
         lineAnimator = null;
         indicatorAnimator = null;
 
-        // TODO: 05/08/16 handle cases where steps are skipped - need to animate all of them
-
-        if (currentStep == previousStep + 1) {
-            // Going to next step
-            animatorSet = new AnimatorSet();
+        if (!resumingTransition) {
+            dispatchStepChanged(previousStep, currentStep);
+        }
+        accessibilityHelper.onStepChanged(previousStep, currentStep);
 
-            // First, draw line to new
-            lineAnimator = ObjectAnimator.ofFloat(StepperIndicator.this, "animProgress", 1.0f, 0.0f);
+        if (Math.abs(currentStep - previousStep) == 1 && sharedFrameClockEnabled &&
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            startClockTransition(currentStep > previousStep);
+            return;
+        }
 
-            // Same time, pop check mark
-            checkAnimator = ObjectAnimator.ofFloat(StepperIndicator.this, "animCheckRadius", indicatorRadius,
-                                                   checkRadius * EXPAND_MARK, checkRadius);
+        // TODO: 05/08/16 handle cases where steps are skipped - need to animate all of them
 
-            // Finally, pop current step indicator
+        TransitionAnimators transition = null;
+        if (currentStep == previousStep + 1) {
+            // Going to next step: draw line to new, same time pop check mark, finally pop current step indicator
+            transition = getTransitionAnimators(true);
+            transition.check.setFloatValues(indicatorRadius, checkRadius * EXPAND_MARK, checkRadius);
             animIndicatorRadius = 0;
-            indicatorAnimator = ObjectAnimator.ofFloat(StepperIndicator.this, "animIndicatorRadius", 0f,
-                                                       indicatorRadius * 1.4f, indicatorRadius);
-
-            animatorSet.play(lineAnimator).with(checkAnimator).before(indicatorAnimator);
+            transition.indicator.setFloatValues(0f, indicatorRadius * 1.4f, indicatorRadius);
         } else if (currentStep == previousStep - 1) {
-            // Going back to previous step
-            animatorSet = new AnimatorSet();
-
-            // First, pop out current step indicator
-            indicatorAnimator = ObjectAnimator
-                    .ofFloat(StepperIndicator.this, "animIndicatorRadius", indicatorRadius, 0f);
-
-            // Then delete line
+            // Going back to previous step: pop out current step indicator, then delete line, finally pop out check
+            // mark to display step indicator
+            transition = getTransitionAnimators(false);
+            transition.indicator.setFloatValues(indicatorRadius, 0f);
             animProgress = 1.0f;
             lineDoneAnimatedPaint.setPathEffect(null);
-            lineAnimator = ObjectAnimator.ofFloat(StepperIndicator.this, "animProgress", 0.0f, 1.0f);
-
-            // Finally, pop out check mark to display step indicator
             animCheckRadius = checkRadius;
-            checkAnimator = ObjectAnimator
-                    .ofFloat(StepperIndicator.this, "animCheckRadius", checkRadius, indicatorRadius);
-
-            animatorSet.playSequentially(indicatorAnimator, lineAnimator, checkAnimator);
+            transition.check.setFloatValues(checkRadius, indicatorRadius);
+        }
+        if (transition != null) {
+            animatorSet = transition.set;
+            lineAnimator = transition.line;
+            indicatorAnimator = transition.indicator;
+            checkAnimator = transition.check;
         }
 
         if (animatorSet != null) {
-            // Max 500 ms for the animation
-            lineAnimator.setDuration(Math.min(500, animDuration));
-            lineAnimator.setInterpolator(new DecelerateInterpolator());
+            final long duration = getTransitionDuration();
+            lineAnimator.setDuration(duration);
             // Other animations will run 2 times faster that line animation
-            indicatorAnimator.setDuration(lineAnimator.getDuration() / 2);
-            checkAnimator.setDuration(lineAnimator.getDuration() / 2);
+            indicatorAnimator.setDuration(duration / 2);
+            checkAnimator.setDuration(getCheckDuration(duration));
 
+            transitionFromStep = previousStep;
+            transitionToStep = currentStep;
+            if (transitionResumeTime > 0 && Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                compressTransition(transitionResumeTime);
+            }
             animatorSet.start();
+            if (transitionResumeTime > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                animatorSet.setCurrentPlayTime(transitionResumeTime);
+                transitionStartTime -= transitionResumeTime;
+            }
+        } else {
+            // Steps skipped, nothing to animate
+            setInTransitionLayer(false);
         }
-
-        invalidate();
     }
 
     /**
-     * <p>
-     * Setter method for the animation progress.
-     * </p>
-     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     * @param forward {@code true} for the transition to the next step
+     * @return the animators of the transition, created on first use and reused by the next transitions
      */
-    @SuppressWarnings("unused")
-    public void setAnimProgress(float animProgress) {
-        this.animProgress = animProgress;
-        lineDoneAnimatedPaint.setPathEffect(createPathEffect(lineLength, animProgress, 0.0f));
-        invalidate();
+    private TransitionAnimators getTransitionAnimators(boolean forward) {
+        TransitionAnimators transition = forward ? forwardTransition : backwardTransition;
+        if (transition == null) {
+            transition = new TransitionAnimators(this, forward);
+            transition.set.addListener(transitionListener);
+            if (forward) {
+                forwardTransition = transition;
+            } else {
+                backwardTransition = transition;
+            }
+        }
+        return transition;
     }
 
     /**
-     * <p>
-     * Setter method for the indicator radius animation.
-     * </p>
-     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     * @return the duration of the line animation of a transition, in milliseconds
      */
-    @SuppressWarnings("unused")
-    public void setAnimIndicatorRadius(float animIndicatorRadius) {
-        this.animIndicatorRadius = animIndicatorRadius;
-        invalidate();
+    private long getTransitionDuration() {
+        final int quality = getAnimationQuality();
+        // Max 500 ms for the animation
+        long duration = Math.min(500, animDuration);
+        if (quality == ANIMATION_QUALITY_REDUCED) {
+            duration /= 2;
+        } else if (quality == ANIMATION_QUALITY_MINIMAL) {
+            duration /= 4;
+        }
+        return duration;
     }
 
     /**
-     * <p>
-     * Setter method for the checkmark radius animation.
-     * </p>
-     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     * @param duration duration of the line animation
+     * @return the duration of the check mark animation, in milliseconds
      */
-    @SuppressWarnings("unused")
-    public void setAnimCheckRadius(float animCheckRadius) {
-        this.animCheckRadius = animCheckRadius;
-        invalidate();
+    private long getCheckDuration(long duration) {
+        // No check mark pop in minimal quality
+        return getAnimationQuality() == ANIMATION_QUALITY_MINIMAL ? 0 : duration / 2;
     }
 
     /**
-     * Set the {@link ViewPager} associated with this widget indicator.
+     * Start the transition to the adjacent step with the {@link SharedAnimationClock}, with the same timings and
+     * values as the {@link #animatorSet} transition.
      *
-     * @param pager {@link ViewPager} to attach
+     * @param forward {@code true} when going to the next step
      */
-    @SuppressWarnings("unused")
-    public void setViewPager(ViewPager pager) {
-        if (pager.getAdapter() == null) {
-            throw new IllegalStateException("ViewPager does not have adapter instance.");
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void startClockTransition(boolean forward) {
+        if (forward) {
+            animIndicatorRadius = 0;
+        } else {
+            animProgress = 1.0f;
+            lineDoneAnimatedPaint.setPathEffect(null);
+            animCheckRadius = checkRadius;
         }
-        setViewPager(pager, pager.getAdapter().getCount());
+        final long duration = getTransitionDuration();
+
+        transitionFromStep = previousStep;
+        transitionToStep = currentStep;
+        inClockTransition = true;
+        clockLineRunning = clockCheckRunning = clockIndicatorRunning = false;
+        onTransitionStarted();
+        SharedAnimationClock.getInstance().start(this, forward, duration, duration / 2, getCheckDuration(duration),
+                                                 transitionResumeTime);
+        transitionStartTime -= transitionResumeTime;
     }
 
     /**
-     * Set the {@link ViewPager} associated with this widget indicator.
+     * Apply a frame of the transition run by the {@link SharedAnimationClock}.
      *
-     * @param pager        {@link ViewPager} to attach
-     * @param keepLastPage {@code true} if the widget should not create an indicator for the last page, to use it as
-     *                     the
-     *                     final page
+     * @param line      fraction of the line animation, or {@link SharedAnimationClock#NOT_STARTED}
+     * @param check     fraction of the check mark animation, or {@link SharedAnimationClock#NOT_STARTED}
+     * @param indicator fraction of the indicator animation, or {@link SharedAnimationClock#NOT_STARTED}
+     * @param finished  {@code true} on the last frame
      */
-    public void setViewPager(ViewPager pager, boolean keepLastPage) {
-        if (pager.getAdapter() == null) {
-            throw new IllegalStateException("ViewPager does not have adapter instance.");
+    void onSharedClockFrame(float line, float check, float indicator, boolean finished) {
+        if (!inClockTransition) {
+            return;
+        }
+        final boolean forward = transitionToStep > transitionFromStep;
+        ensureGeometry();
+
+        if (line >= 0) {
+            final float fraction = LINE_INTERPOLATOR.getInterpolation(line);
+            animProgress = forward ? 1f - fraction : fraction;
+            if (!geometry.lowDetail) {
+                lineDoneAnimatedPaint.setPathEffect(createPathEffect(geometry.lineLength, animProgress, 0.0f));
+            }
+        }
+        if (check >= 0) {
+            final float fraction = RADIUS_INTERPOLATOR.getInterpolation(check);
+            animCheckRadius = forward ? interpolate(fraction, indicatorRadius, checkRadius * EXPAND_MARK, checkRadius)
+                    : checkRadius + (indicatorRadius - checkRadius) * fraction;
+        }
+        if (indicator >= 0) {
+            final float fraction = RADIUS_INTERPOLATOR.getInterpolation(indicator);
+            animIndicatorRadius = forward ? interpolate(fraction, 0f, indicatorRadius * 1.4f, indicatorRadius)
+                    : indicatorRadius * (1f - fraction);
+        }
+        clockLineRunning = line >= 0 && line < 1;
+        clockCheckRunning = check >= 0 && check < 1;
+        clockIndicatorRunning = indicator >= 0 && indicator < 1;
+        invalidateTransition();
+
+        if (finished) {
+            inClockTransition = false;
+            onTransitionFinished(false);
         }
-        setViewPager(pager, pager.getAdapter().getCount() - (keepLastPage ? 1 : 0));
     }
 
     /**
-     * Set the {@link ViewPager} associated with this widget indicator.
+     * @return the value at the given interpolated fraction of the keyframes {@code from}, {@code middle}, {@code to},
+     * evenly spread like the keyframes of {@link ObjectAnimator#ofFloat(Object, String, float...)}: the interpolator
+     * applies to the whole animation, the values are linear between the keyframes
+     */
+    private static float interpolate(float fraction, float from, float middle, float to) {
+        if (fraction < 0.5f) {
+            return from + (middle - from) * fraction * 2f;
+        }
+        return middle + (to - middle) * (fraction - 0.5f) * 2f;
+    }
+
+    /**
+     * @return {@code true} if a transition between steps is running
+     */
+    private boolean isTransitionRunning() {
+        return inClockTransition || (animatorSet != null && animatorSet.isRunning());
+    }
+
+    /**
+     * Shorten the transition about to start to the duration remaining after the given play time, so that a resumed
+     * transition ends on time where it can't be seeked.
      *
-     * @param pager     {@link ViewPager} to attach
-     * @param stepCount The real page count to display (use this if you are using looped viewpager to indicate the real
-     *                  number
-     *                  of pages)
+     * @param playTime play time already elapsed, in milliseconds
      */
-    public void setViewPager(ViewPager pager, int stepCount) {
-        if (this.pager == pager) {
-            return;
+    private void compressTransition(long playTime) {
+        final long totalDuration;
+        if (transitionToStep > transitionFromStep) {
+            totalDuration = Math.max(lineAnimator.getDuration(), checkAnimator.getDuration())
+                    + indicatorAnimator.getDuration();
+        } else {
+            totalDuration = indicatorAnimator.getDuration() + lineAnimator.getDuration()
+                    + checkAnimator.getDuration();
         }
-        if (this.pager != null) {
-            pager.removeOnPageChangeListener(this);
+        if (totalDuration <= 0) {
+            return;
+        }
+        final float remaining = Math.max(0f, 1f - (float) playTime / totalDuration);
+        lineAnimator.setDuration((long) (lineAnimator.getDuration() * remaining));
+        indicatorAnimator.setDuration((long) (indicatorAnimator.getDuration() * remaining));
+        checkAnimator.setDuration((long) (checkAnimator.getDuration() * remaining));
+    }
+
+    /**
+     * Start again a transition saved in the instance state, from the given play time.
+     *
+     * @param fromStep step the transition goes from
+     * @param toStep   step the transition goes to
+     * @param playTime play time already elapsed, in milliseconds
+     */
+    private void resumeStepTransition(int fromStep, int toStep, long playTime) {
+        currentStep = fromStep;
+        resumingTransition = true;
+        transitionResumeTime = playTime;
+        try {
+            startStepTransition(toStep);
+        } finally {
+            resumingTransition = false;
+            transitionResumeTime = 0;
+        }
+    }
+
+    /**
+     * Draw the view in a hardware layer while the transition is running, so that each frame only redraws the area
+     * of the transition in the layer instead of the whole view.
+     *
+     * @param inLayer {@code true} when the transition starts, {@code false} when it ends
+     */
+    private void setInTransitionLayer(boolean inLayer) {
+        if (inLayer == inTransitionLayer) {
+            return;
+        }
+        if (inLayer) {
+            // Don't override a layer set by the app
+            if (!transitionLayerEnabled || !isHardwareAccelerated() || getLayerType() != LAYER_TYPE_NONE) {
+                return;
+            }
+            setLayerType(LAYER_TYPE_HARDWARE, null);
+        } else {
+            setLayerType(LAYER_TYPE_NONE, null);
+        }
+        inTransitionLayer = inLayer;
+    }
+
+    /**
+     * Invalidate the area of the running transition only: the steps it goes from and to, and the line between them.
+     */
+    private void invalidateTransition() {
+        ensureGeometry();
+        final int fromStep = Math.min(previousStep, currentStep);
+        final int toStep = Math.max(previousStep, currentStep);
+        if (geometry.lowDetail || fromStep < 0 || toStep >= geometry.stepCount) {
+            invalidate();
+            return;
+        }
+
+        // Largest animated radius (check mark and indicator pop), with a pixel of anti-aliasing
+        float radius = Math.max(circleRadius + circlePaint.getStrokeWidth(),
+                                Math.max(checkRadius * EXPAND_MARK, indicatorRadius * 1.4f)) + 1;
+        if (useBottomIndicator) {
+            radius = Math.max(radius, bottomIndicatorWidth / 2);
+        }
+        final float centerY = geometry.centerY;
+        transitionDirtyRect.set((int) (geometry.stepX[fromStep] - radius), (int) (centerY - radius),
+                                (int) Math.ceil(geometry.stepX[toStep] + radius),
+                                useBottomIndicator ? getHeight() : (int) Math.ceil(centerY + radius));
+        invalidate(transitionDirtyRect);
+    }
+
+    /**
+     * Called when the {@link #animatorSet} transition starts.
+     */
+    private void onTransitionStarted() {
+        transitionStartTime = AnimationUtils.currentAnimationTimeMillis();
+        if (animationQualityMonitor != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && getDisplay() != null) {
+                animationQualityMonitor.setRefreshRate(getDisplay().getRefreshRate());
+            }
+            animationQualityMonitor.onTransitionStart();
+        }
+        setInTransitionLayer(true);
+        final OnStepChangeListener[] listeners = onStepChangeListeners;
+        for (OnStepChangeListener listener : listeners) {
+            listener.onTransitionStart(transitionFromStep, transitionToStep);
+        }
+    }
+
+    /**
+     * Called when the {@link #animatorSet} transition ends, or is cancelled.
+     *
+     * @param cancelled {@code true} if the transition was cancelled before its end
+     */
+    private void onTransitionFinished(boolean cancelled) {
+        if (animationQualityMonitor != null) {
+            animationQualityMonitor.onTransitionEnd(cancelled);
+        }
+        if (!restartingTransition) {
+            setInTransitionLayer(false);
+        }
+        final OnStepChangeListener[] listeners = onStepChangeListeners;
+        for (OnStepChangeListener listener : listeners) {
+            if (cancelled) {
+                listener.onTransitionCancel(transitionFromStep, transitionToStep);
+            } else {
+                listener.onTransitionEnd(transitionFromStep, transitionToStep);
+            }
+        }
+    }
+
+    private void dispatchStepClicked(int step) {
+        for (OnStepClickListener listener : onStepClickListeners) {
+            listener.onStepClicked(step);
+        }
+    }
+
+    private void dispatchScrubStarted(int step) {
+        final OnStepScrubListener[] listeners = onStepScrubListeners;
+        for (OnStepScrubListener listener : listeners) {
+            listener.onScrubStarted(step);
+        }
+    }
+
+    private void dispatchScrubStepChanged(int previousStep, int step) {
+        final OnStepScrubListener[] listeners = onStepScrubListeners;
+        for (OnStepScrubListener listener : listeners) {
+            listener.onScrubStepChanged(previousStep, step);
+        }
+    }
+
+    private void dispatchScrubEnded(int step, boolean cancelled) {
+        final OnStepScrubListener[] listeners = onStepScrubListeners;
+        for (OnStepScrubListener listener : listeners) {
+            listener.onScrubEnded(step, cancelled);
+        }
+    }
+
+    private void dispatchStepChanged(int previousStep, int currentStep) {
+        final OnStepChangeListener[] listeners = onStepChangeListeners;
+        for (OnStepChangeListener listener : listeners) {
+            listener.onStepChanged(previousStep, currentStep);
+        }
+    }
+
+    /**
+     * Start a batch of changes.
+     * <p>
+     * Until the matching {@link #commitUpdate()}, setters only record the work they need (geometry computation,
+     * layout, redraw) and {@link #setCurrentStep(int)} only records the requested step. The commit then computes the
+     * geometry and invalidates the view once, whatever the number of setters called in between.
+     * </p>
+     * <p>
+     * Calls can be nested, changes are applied when the outermost update is committed.
+     * </p>
+     *
+     * @see #commitUpdate()
+     */
+    @UiThread
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * Apply all the changes made since the matching {@link #beginUpdate()}.
+     * <p>
+     * The geometry is computed at most once, then the pending step (if any) is applied with its transition, and
+     * finally a single layout and/or redraw is requested.
+     * </p>
+     *
+     * @see #beginUpdate()
+     */
+    @UiThread
+    public void commitUpdate() {
+        if (updateDepth == 0) {
+            throw new IllegalStateException("commitUpdate() called without a matching beginUpdate()");
+        }
+        if (--updateDepth > 0) {
+            return;
+        }
+
+        final int updates = pendingUpdates;
+        pendingUpdates = 0;
+
+        if ((updates & UPDATE_COMPUTE) != 0) {
+            // Computed lazily, before the next draw or hit-test
+            geometryDirty = true;
+        }
+
+        final boolean stepChanged = pendingStep != STEP_INVALID;
+        if (stepChanged) {
+            // Step count may have been reduced after the step was requested
+            final int step = Math.min(pendingStep, stepCount);
+            pendingStep = STEP_INVALID;
+            startStepTransition(step);
+        }
+
+        if ((updates & UPDATE_LAYOUT) != 0) {
+            requestLayout();
+        }
+        if (updates != 0 || stepChanged) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Request the given work, applied immediately or when the current update is committed.
+     *
+     * @param updates a combination of {@code UPDATE_*} flags. A redraw is always implied.
+     */
+    private void requestUpdate(int updates) {
+        pendingUpdates |= updates | UPDATE_DRAW;
+        if (updateDepth == 0) {
+            // Not in an update, apply right away
+            updateDepth = 1;
+            commitUpdate();
+        }
+    }
+
+    /**
+     * <p>
+     * Setter method for the animation progress.
+     * </p>
+     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     */
+    @SuppressWarnings("unused")
+    public void setAnimProgress(float animProgress) {
+        this.animProgress = animProgress;
+        ensureGeometry();
+        if (!geometry.lowDetail) {
+            // No lines to animate in low detail mode
+            lineDoneAnimatedPaint.setPathEffect(createPathEffect(geometry.lineLength, animProgress, 0.0f));
+        }
+        invalidateTransition();
+    }
+
+    /**
+     * <p>
+     * Setter method for the indicator radius animation.
+     * </p>
+     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     */
+    @SuppressWarnings("unused")
+    public void setAnimIndicatorRadius(float animIndicatorRadius) {
+        this.animIndicatorRadius = animIndicatorRadius;
+        invalidateTransition();
+    }
+
+    /**
+     * <p>
+     * Setter method for the checkmark radius animation.
+     * </p>
+     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     */
+    @SuppressWarnings("unused")
+    public void setAnimCheckRadius(float animCheckRadius) {
+        this.animCheckRadius = animCheckRadius;
+        invalidateTransition();
+    }
+
+    /**
+     * <p>
+     * Setter method for the step state change animation.
+     * </p>
+     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     */
+    @SuppressWarnings("unused")
+    public void setAnimStateProgress(float animStateProgress) {
+        this.animStateProgress = animStateProgress;
+        // Only the changed steps are animated
+        invalidate(stateDirtyRect);
+    }
+
+    /**
+     * <p>
+     * Setter method for the reflow animation, after a step was inserted or removed.
+     * </p>
+     * <font color="red">DO NOT CALL, DELETE OR RENAME</font>: Will be used by animation.
+     */
+    @SuppressWarnings("unused")
+    public void setReflowProgress(float reflowProgress) {
+        this.reflowProgress = reflowProgress;
+        // Applied by the computation if the geometry is dirty
+        final boolean computed = geometryDirty;
+        ensureGeometry();
+        if (reflowFromX == null) {
+            return;
+        }
+        if (!computed) {
+            applyReflow();
+        }
+        if (reflowProgress >= 1f) {
+            // Steps are at their computed positions
+            reflowFromX = null;
+        }
+        invalidate();
+    }
+
+    /**
+     * Apply a new state for each step.
+     * <p>
+     * The given states are compared with the current ones, only the steps whose state changed are animated and
+     * redrawn. When the same {@link StepStates} instance is submitted again, only the steps modified on it since
+     * the previous submission are compared, so updating a few steps of a long timeline is cheap.
+     * </p>
+     *
+     * @param states states of every step, with exactly {@link #getStepCount()} steps
+     */
+    @UiThread
+    public void submitState(StepStates states) {
+        if (states.getStepCount() != stepCount) {
+            throw new IllegalArgumentException("Invalid number of step states " + states.getStepCount() +
+                                                       ", it should be equal to stepCount(" + stepCount + ")");
+        }
+        if (stepStates == null) {
+            stepStates = new StepStates(stepCount);
+        }
+
+        // Previous changes jump to their final state
+        if (stateAnimator != null) {
+            stateAnimator.cancel();
+        }
+        animStateProgress = 1f;
+        stateChangedSteps.clear();
+        stateDirtyRect.setEmpty();
+        ensureGeometry();
+
+        if (states == submittedStates) {
+            for (int i = states.nextModifiedStep(0); i >= 0; i = states.nextModifiedStep(i + 1)) {
+                applyStepState(states, i);
+            }
+        } else {
+            for (int i = 0; i < stepCount; i++) {
+                applyStepState(states, i);
+            }
+        }
+        states.clearModifications();
+        stepStates.clearModifications();
+        submittedStates = states;
+
+        if (stateChangedSteps.isEmpty()) {
+            return;
+        }
+
+        if (stateAnimator == null) {
+            stateAnimator = ObjectAnimator.ofFloat(StepperIndicator.this, "animStateProgress", 0f, 1f);
+        }
+        stateAnimator.setDuration(Math.min(500, animDuration));
+        stateAnimator.start();
+        invalidate(stateDirtyRect);
+    }
+
+    /**
+     * Copy the state of the given step if it changed, and flag it as changed.
+     */
+    private void applyStepState(StepStates states, int step) {
+        final int value = states.get(step);
+        if (stepStates.get(step) == value) {
+            return;
+        }
+
+        stepStates.set(step, value);
+        stateChangedSteps.set(step);
+        accessibilityHelper.invalidateStep(step);
+        final RectF area = getStepClickArea(step);
+        stateDirtyRect.union((int) area.left, (int) area.top,
+                             (int) Math.ceil(area.right), (int) Math.ceil(area.bottom));
+    }
+
+    /**
+     * @param step step position
+     * @return the state of the step, one of the {@code StepStates.STATE_*} values
+     * @see #submitState(StepStates)
+     */
+    public int getStepState(int step) {
+        isStepValid(step); // it will throw an error if not valid
+        return stepStates == null ? StepStates.STATE_DEFAULT : stepStates.getState(step);
+    }
+
+    /**
+     * Set the progress of a step, displayed as a ring around the step circle. Use it to display the progress of the
+     * task behind each step (like an upload).
+     * <p>
+     * Can be called from any thread, at any rate: the progress is applied on the UI thread on the next frame, and only
+     * the area of the steps whose progress changed is redrawn, once per frame. No lock is taken and nothing is
+     * allocated per call.
+     * </p>
+     *
+     * @param step     step position
+     * @param fraction progress from 0 (no ring) to 1 (full ring)
+     */
+    @AnyThread
+    public void setStepProgress(int step, float fraction) {
+        final AtomicIntegerArray posted = postedProgress;
+        if (step < 0 || step >= posted.length()) {
+            throw new IllegalArgumentException("Invalid step position " + step + " for " + posted.length() + " steps");
+        }
+        fraction = Math.max(0f, Math.min(1f, fraction));
+        posted.set(step, 1 + Math.round(fraction * PROGRESS_RESOLUTION));
+        if (progressFrameScheduled.compareAndSet(false, true)) {
+            // First progress posted since the last frame, schedule a single frame callback
+            ViewCompat.postOnAnimation(this, applyPostedProgress);
+        }
+    }
+
+    /**
+     * @param step step position
+     * @return the progress of the step applied so far, from 0 to 1
+     * @see #setStepProgress(int, float)
+     */
+    @UiThread
+    public float getStepProgress(int step) {
+        isStepValid(step); // it will throw an error if not valid
+        return stepProgress == null ? 0f : stepProgress[step];
+    }
+
+    private void applyStepProgress(int step, float fraction) {
+        if (stepProgress == null) {
+            if (fraction == 0f) {
+                return;
+            }
+            stepProgress = new float[stepCount];
+        }
+        if (stepProgress[step] == fraction) {
+            return;
+        }
+        stepProgress[step] = fraction;
+
+        if (geometry.lowDetail) {
+            // Progress is not displayed in low detail mode
+            return;
+        }
+        final float radius = circleRadius + progressPaint.getStrokeWidth();
+        final float indicator = geometry.stepX[step];
+        progressDirtyRect.union((int) (indicator - radius), (int) (geometry.centerY - radius),
+                                (int) Math.ceil(indicator + radius), (int) Math.ceil(geometry.centerY + radius));
+    }
+
+    /**
+     * Drop the progress of the steps, when the steps are no longer the same.
+     */
+    private void resetStepProgress() {
+        stepProgress = null;
+        postedProgress = new AtomicIntegerArray(stepCount);
+    }
+
+    /**
+     * Drop the per-step states, when the steps are no longer the same.
+     */
+    private void resetStepStates() {
+        if (stateAnimator != null) {
+            stateAnimator.cancel();
+        }
+        animStateProgress = 1f;
+        stepStates = null;
+        submittedStates = null;
+        stateChangedSteps.clear();
+    }
+
+    /**
+     * Set the {@link ViewPager} associated with this widget indicator.
+     *
+     * @param pager {@link ViewPager} to attach
+     */
+    @SuppressWarnings("unused")
+    public void setViewPager(ViewPager pager) {
+        if (pager.getAdapter() == null) {
+            throw new IllegalStateException("ViewPager does not have adapter instance.");
+        }
+        setViewPager(pager, pager.getAdapter().getCount());
+    }
+
+    /**
+     * Set the {@link ViewPager} associated with this widget indicator.
+     *
+     * @param pager        {@link ViewPager} to attach
+     * @param keepLastPage {@code true} if the widget should not create an indicator for the last page, to use it as
+     *                     the
+     *                     final page
+     */
+    public void setViewPager(ViewPager pager, boolean keepLastPage) {
+        if (pager.getAdapter() == null) {
+            throw new IllegalStateException("ViewPager does not have adapter instance.");
+        }
+        setViewPager(pager, pager.getAdapter().getCount() - (keepLastPage ? 1 : 0));
+    }
+
+    /**
+     * Set the {@link ViewPager} associated with this widget indicator.
+     * <p>
+     * The indicator does not register itself on the pager: all the indicators of a pager share a single listener,
+     * which only references them weakly and only while they are attached to the window.
+     * </p>
+     *
+     * @param pager     {@link ViewPager} to attach
+     * @param stepCount The real page count to display (use this if you are using looped viewpager to indicate the real
+     *                  number
+     *                  of pages)
+     */
+    public void setViewPager(ViewPager pager, int stepCount) {
+        if (this.pager == pager) {
+            return;
         }
         if (pager.getAdapter() == null) {
             throw new IllegalStateException("ViewPager does not have adapter instance.");
         }
+        // Checks the count, and resets the steps, the pending step and the running reflow
+        setStepCount(stepCount);
+
+        final boolean attached = ViewCompat.isAttachedToWindow(this);
+        if (this.pager != null && attached) {
+            ViewPagerSyncHub.detach(this.pager, this);
+        }
+
+        this.pager = pager;
+        if (attached) {
+            ViewPagerSyncHub.attach(pager, this);
+        }
+
+        final LabelProvider provider = labelLayouts.getProvider();
+        if (showLabels && (provider == null || provider instanceof PagerLabelProvider)) {
+            // Titles of the new pager
+            setLabelsUsingPageTitles();
+        }
+
+        requestUpdate(UPDATE_COMPUTE | UPDATE_LAYOUT);
+    }
+
+    /**
+     * Use the page titles of the adapter as labels, they are fetched when needed and refreshed when the adapter
+     * notifies a change.
+     */
+    private void setLabelsUsingPageTitles() {
+        setLabelProvider(new PagerLabelProvider(pager.getAdapter()));
+    }
+
+    /**
+     * Pass a labels array of Charsequence that is greater than or equal to the {@code stepCount}.
+     * Never pass {@code null} to this manually. Call {@code showLabels(false)} to hide labels.
+     *
+     * @param labelsArray Non-null array of CharSequence
+     */
+    public void setLabels(CharSequence[] labelsArray) {
+        final LabelProvider provider = labelLayouts.getProvider();
+        if (provider instanceof ArrayLabelProvider && ((ArrayLabelProvider) provider).labels == labelsArray) {
+            return;
+        }
+        if (labelsArray == null) {
+            setLabelProvider(null);
+            return;
+        }
+        if (stepCount > labelsArray.length) {
+            throw new IllegalArgumentException(
+                    "Invalid number of labels for the indicators. Please provide a list " +
+                            "of labels with at least as many items as the number of steps required!");
+        }
+        setLabelProvider(new ArrayLabelProvider(labelsArray));
+    }
+
+    /**
+     * Set the provider of the labels. Labels are only requested for the steps being drawn, and their layouts are kept
+     * in a bounded cache: use it for large numbers of steps, or labels expensive to create.
+     * <p>
+     * Call {@link #notifyLabelsChanged()} or {@link #notifyLabelChanged(int)} when the labels change.
+     * </p>
+     *
+     * @param provider provider of the labels, or {@code null} to remove the labels
+     */
+    public void setLabelProvider(@Nullable LabelProvider provider) {
+        final LabelProvider previous = labelLayouts.getProvider();
+        if (previous == provider) {
+            return;
+        }
+        if (previous instanceof PagerLabelProvider) {
+            ((PagerLabelProvider) previous).unregister();
+        }
+        labelLayouts.setProvider(provider);
+        accessibilityHelper.invalidateSteps();
+        if (provider == null) {
+            return;
+        }
+        if (provider instanceof PagerLabelProvider && ViewCompat.isAttachedToWindow(this)) {
+            // Registered while attached only, so that the adapter does not keep the view alive
+            ((PagerLabelProvider) provider).register();
+        }
+        if (showLabels) {
+            // Already displayed, new labels may need a different height
+            requestUpdate(UPDATE_LAYOUT);
+        } else {
+            showLabels(true);
+        }
+    }
+
+    /**
+     * Notify that some labels of the {@link LabelProvider} changed. The labels already laid out are compared with the
+     * ones of the provider, only the ones which changed are laid out and redrawn.
+     */
+    @UiThread
+    public void notifyLabelsChanged() {
+        changedLabels.clear();
+        labelLayouts.refresh(changedLabels);
+        if (changedLabels.isEmpty()) {
+            return;
+        }
+        for (int i = changedLabels.nextSetBit(0); i >= 0; i = changedLabels.nextSetBit(i + 1)) {
+            accessibilityHelper.invalidateStep(i);
+        }
+        // Labels height may have changed, shrink it if the highest labels changed
+        labelLayouts.computeMaxLineCount();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Notify that the label of the given step changed in the {@link LabelProvider}.
+     *
+     * @param step step position
+     */
+    @UiThread
+    public void notifyLabelChanged(int step) {
+        isStepValid(step); // it will throw an error if not valid
+        labelLayouts.remove(step);
+        accessibilityHelper.invalidateStep(step);
+        // Labels height may have changed, shrink it if the highest label changed
+        labelLayouts.computeMaxLineCount();
+        requestLayout();
+        invalidate();
+    }
+
+    public void setLabelColor(int color) {
+        if (labelPaint.getColor() == color) {
+            return;
+        }
+        // Label layouts use the label paint (or a copy), a redraw is enough
+        labelPaint.setColor(color);
+        labelLayouts.syncPaints();
+        requestUpdate(UPDATE_DRAW);
+    }
+
+    /**
+     * @param color color of the progress ring of the steps
+     * @see #setStepProgress(int, float)
+     */
+    public void setProgressColor(int color) {
+        if (progressPaint.getColor() == color) {
+            return;
+        }
+        progressPaint.setColor(color);
+        requestUpdate(UPDATE_DRAW);
+    }
+
+    /**
+     * Shows the labels if true is passed. Else hides them.
+     *
+     * @param show Boolean to show or hide the labels
+     */
+    public void showLabels(boolean show) {
+        if (showLabels == show) {
+            return;
+        }
+        showLabels = show;
+        // Descriptions include the labels
+        accessibilityHelper.invalidateSteps();
+        // Steps positions depend on the labels grid
+        requestUpdate(UPDATE_COMPUTE | UPDATE_LAYOUT);
+    }
+
+    /**
+     * Do ahead of time the work otherwise done by the first frames and the first transition: create the animators
+     * of the transitions, lay out the labels of the drawn steps, compute the positions of the steps and load the text
+     * of the step numbers. The first transition then runs with warm caches.
+     * <p>
+     * Call it while the main thread is idle, for example once the screen is displayed, or let the view call it with
+     * {@link #setPrewarmOnIdle(boolean)}. The labels and positions are only prepared once the view was measured.
+     * </p>
+     */
+    @UiThread
+    public void prewarm() {
+        getTransitionAnimators(true);
+        getTransitionAnimators(false);
+
+        final int width = getMeasuredWidth();
+        if (stepCount <= 0 || width <= 0) {
+            return;
+        }
+        final int previousLineCount = labelLineCount;
+        calculateMaxLabelHeight(width);
+        if (labelLineCount != previousLineCount) {
+            // Laid out labels are higher than the measured ones
+            requestLayout();
+        }
+        ensureGeometry();
+        if (showStepTextNumber && lastDrawnStep != STEP_INVALID) {
+            canvasRenderer.prewarmStepNumbers(firstDrawnStep, Math.min(lastDrawnStep, stepCount - 1));
+        }
+    }
+
+    /**
+     * Call {@link #prewarm()} automatically each time the view is attached, as soon as the main thread is idle,
+     * after the inflation and the first frames.
+     * <p>
+     * Disabled by default, can also be enabled with the {@code stpi_prewarmOnIdle} attribute.
+     * </p>
+     *
+     * @param enabled {@code true} to prewarm the view when the main thread is idle
+     */
+    public void setPrewarmOnIdle(boolean enabled) {
+        prewarmOnIdle = enabled;
+        if (!enabled) {
+            cancelPrewarm();
+        } else if (ViewCompat.isAttachedToWindow(this)) {
+            schedulePrewarm();
+        }
+    }
+
+    private void schedulePrewarm() {
+        if (!prewarmScheduled) {
+            prewarmScheduled = true;
+            Looper.myQueue().addIdleHandler(prewarmIdleHandler);
+        }
+    }
+
+    private void cancelPrewarm() {
+        if (prewarmScheduled) {
+            prewarmScheduled = false;
+            Looper.myQueue().removeIdleHandler(prewarmIdleHandler);
+        }
+    }
+
+    /**
+     * Run the transitions between steps with a frame clock shared by every indicator using it, instead of one set of
+     * animators per indicator: a single frame callback drives all the running transitions. Use it when many
+     * indicators change together, like in a list or a dashboard.
+     * <p>
+     * Disabled by default. Requires API 16, ignored below.
+     * </p>
+     *
+     * @param enabled {@code true} to use the shared frame clock for the next transitions
+     */
+    public void setSharedFrameClockEnabled(boolean enabled) {
+        sharedFrameClockEnabled = enabled;
+    }
+
+    /**
+     * Draw the view in a hardware layer during the transitions between steps, so that each frame only redraws the
+     * animated steps in the layer. The layer is released as soon as the transition ends, and is not used if a layer
+     * type was already set on the view.
+     * <p>
+     * Enabled by default, only used when the view is hardware accelerated.
+     * </p>
+     *
+     * @param enabled {@code true} to use a hardware layer during the transitions
+     */
+    public void setTransitionLayerEnabled(boolean enabled) {
+        transitionLayerEnabled = enabled;
+        if (!enabled) {
+            setInTransitionLayer(false);
+        }
+    }
+
+    /**
+     * Watch the frame rate during the transitions between steps and degrade the animations when frames are dropped:
+     * shorter durations first ({@link #ANIMATION_QUALITY_REDUCED}), then no check mark pop and no anti-aliasing
+     * ({@link #ANIMATION_QUALITY_MINIMAL}). The quality is restored step by step once transitions run smoothly again.
+     * <p>
+     * Disabled by default, only available on API 16+.
+     * </p>
+     *
+     * @param enabled {@code true} to adapt the animations quality
+     * @see #setOnAnimationQualityChangeListener(OnAnimationQualityChangeListener)
+     */
+    public void setAdaptiveAnimationQuality(boolean enabled) {
+        if (enabled == (animationQualityMonitor != null) || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+        if (enabled) {
+            animationQualityMonitor = new AnimationQualityMonitor(new AnimationQualityMonitor.Callback() {
+                @Override
+                public void onAnimationQualityChanged(int quality) {
+                    applyAnimationQuality(quality);
+                }
+            });
+        } else {
+            // Back to full quality
+            animationQualityMonitor.reset();
+            animationQualityMonitor = null;
+        }
+    }
+
+    /**
+     * @return the current animation quality, one of the {@code ANIMATION_QUALITY_*} values. Always
+     * {@link #ANIMATION_QUALITY_FULL} unless {@link #setAdaptiveAnimationQuality(boolean)} is enabled.
+     */
+    public int getAnimationQuality() {
+        return animationQualityMonitor != null ? animationQualityMonitor.getQuality() : ANIMATION_QUALITY_FULL;
+    }
+
+    /**
+     * Set the listener notified when the animation quality is adapted.
+     *
+     * @param listener listener, or {@code null} to remove it
+     * @see #setAdaptiveAnimationQuality(boolean)
+     */
+    public void setOnAnimationQualityChangeListener(@Nullable OnAnimationQualityChangeListener listener) {
+        onAnimationQualityChangeListener = listener;
+    }
+
+    private void applyAnimationQuality(int quality) {
+        setPaintsAntiAlias(quality != ANIMATION_QUALITY_MINIMAL);
+        invalidate();
+
+        if (onAnimationQualityChangeListener != null) {
+            onAnimationQualityChangeListener.onAnimationQualityChanged(quality);
+        }
+    }
+
+    private void setPaintsAntiAlias(boolean antiAlias) {
+        circlePaint.setAntiAlias(antiAlias);
+        indicatorPaint.setAntiAlias(antiAlias);
+        stepTextNumberPaint.setAntiAlias(antiAlias);
+        failedPaint.setAntiAlias(antiAlias);
+        progressPaint.setAntiAlias(antiAlias);
+        highlightPaint.setAntiAlias(antiAlias);
+        optionalCirclePaint.setAntiAlias(antiAlias);
+        linePaint.setAntiAlias(antiAlias);
+        lineDonePaint.setAntiAlias(antiAlias);
+        lineDoneAnimatedPaint.setAntiAlias(antiAlias);
+        labelPaint.setAntiAlias(antiAlias);
+        labelLayouts.syncPaints();
+        setPaintsAntiAlias(stepsCirclePaintList, antiAlias);
+        setPaintsAntiAlias(stepsIndicatorPaintList, antiAlias);
+        setPaintsAntiAlias(stepsTextNumberPaintList, antiAlias);
+    }
+
+    private static void setPaintsAntiAlias(List<Paint> paints, boolean antiAlias) {
+        if (paints == null) {
+            return;
+        }
+        for (Paint paint : paints) {
+            if (paint != null) {
+                paint.setAntiAlias(antiAlias);
+            }
+        }
+    }
+
+    /**
+     * Add the {@link OnStepClickListener} to the list of listeners which will receive events when an step is clicked.
+     *
+     * @param listener The {@link OnStepClickListener} which will be added
+     */
+    public void addOnStepClickListener(OnStepClickListener listener) {
+        onStepClickListeners.add(listener);
+    }
+
+    /**
+     * Remove the specified {@link OnStepClickListener} from the list of listeners which will receive events when an
+     * step is clicked.
+     *
+     * @param listener The {@link OnStepClickListener} which will be removed
+     */
+    @SuppressWarnings("unused")
+    public void removeOnStepClickListener(OnStepClickListener listener) {
+        onStepClickListeners.remove(listener);
+    }
+
+    /**
+     * Remove all {@link OnStepClickListener} listeners from the StepperIndicator widget.
+     * No more events will be propagated.
+     */
+    @SuppressWarnings("unused")
+    public void clearOnStepClickListeners() {
+        onStepClickListeners.clear();
+    }
+
+    /**
+     * Add the {@link OnStepChangeListener} to the list of listeners which will receive events when the current step
+     * changes, and when the transition to the new step starts, ends or is cancelled.
+     * <p>
+     * Listeners can safely be added or removed while an event is dispatched, the change is effective for the next
+     * event.
+     * </p>
+     *
+     * @param listener The {@link OnStepChangeListener} which will be added
+     */
+    public void addOnStepChangeListener(OnStepChangeListener listener) {
+        final OnStepChangeListener[] listeners = Arrays.copyOf(onStepChangeListeners,
+                                                               onStepChangeListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        onStepChangeListeners = listeners;
+    }
+
+    /**
+     * Remove the specified {@link OnStepChangeListener} from the list of listeners which will receive events when the
+     * current step changes.
+     *
+     * @param listener The {@link OnStepChangeListener} which will be removed
+     */
+    @SuppressWarnings("unused")
+    public void removeOnStepChangeListener(OnStepChangeListener listener) {
+        final OnStepChangeListener[] listeners = onStepChangeListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                final OnStepChangeListener[] newListeners = new OnStepChangeListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, newListeners, 0, i);
+                System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                onStepChangeListeners = newListeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add the {@link OnStepScrubListener} to the list of listeners which will receive events when the finger is
+     * dragged across the steps.
+     * <p>
+     * While there is at least one listener, pressing the widget and dragging horizontally scrubs across the steps:
+     * the step under the finger is highlighted, and reported each time it changes. Parents are only prevented from
+     * intercepting the gesture once scrubbing started: a vertical scroll starting on the widget still scrolls its
+     * parent.
+     * </p>
+     *
+     * @param listener The {@link OnStepScrubListener} which will be added
+     */
+    public void addOnStepScrubListener(OnStepScrubListener listener) {
+        final OnStepScrubListener[] listeners = Arrays.copyOf(onStepScrubListeners,
+                                                              onStepScrubListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        onStepScrubListeners = listeners;
+    }
+
+    /**
+     * Remove the specified {@link OnStepScrubListener} from the list of listeners which will receive events when the
+     * finger is dragged across the steps.
+     *
+     * @param listener The {@link OnStepScrubListener} which will be removed
+     */
+    @SuppressWarnings("unused")
+    public void removeOnStepScrubListener(OnStepScrubListener listener) {
+        final OnStepScrubListener[] listeners = onStepScrubListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                final OnStepScrubListener[] newListeners = new OnStepScrubListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, newListeners, 0, i);
+                System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                onStepScrubListeners = newListeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Check if the widget has any valid {@link OnStepClickListener} listener set for receiving events from the steps.
+     *
+     * @return {@code true} if there are listeners registered, {@code false} otherwise.
+     */
+    public boolean isOnStepClickListenerAvailable() {
+        return null != onStepClickListeners && !onStepClickListeners.isEmpty();
+    }
+
+    public void setDoneIcon(@Nullable Drawable doneIcon) {
+        if (this.doneIcon == doneIcon && (doneIcon == null || showDoneIcon)) {
+            return;
+        }
+        this.doneIcon = doneIcon;
+        if (doneIcon != null) {
+            showDoneIcon = true;
+            int size = getContext().getResources().getDimensionPixelSize(R.dimen.stpi_done_icon_size);
+            doneIcon.setBounds(0, 0, size, size);
+        }
+        requestUpdate(UPDATE_DRAW);
+    }
+
+    /**
+     * Display the step number inside each step circle, instead of the bullet for the current step.
+     *
+     * @param showStepTextNumber {@code true} to display the step numbers
+     */
+    public void setShowStepNumberInstead(boolean showStepTextNumber) {
+        if (this.showStepTextNumber == showStepTextNumber) {
+            return;
+        }
+        this.showStepTextNumber = showStepTextNumber;
+        requestUpdate(UPDATE_DRAW);
+    }
+
+    /**
+     * Display the indicator for the current step at the bottom instead of inside the step bullet.
+     *
+     * @param useBottomIndicator {@code true} to use the bottom indicator
+     */
+    public void setUseBottomIndicator(boolean useBottomIndicator) {
+        if (useBottomIndicator && bottomIndicatorHeight <= 0) {
+            Log.d(TAG, "setUseBottomIndicator: Invalid indicator height, bottom indicator can't be enabled!");
+            return;
+        }
+        if (this.useBottomIndicator == useBottomIndicator) {
+            return;
+        }
+        this.useBottomIndicator = useBottomIndicator;
+        // Changes both the steps positions and the height of the widget
+        requestUpdate(UPDATE_COMPUTE | UPDATE_LAYOUT);
+    }
+
+    public void setShowDoneIcon(boolean showDoneIcon) {
+        if (this.showDoneIcon == showDoneIcon) {
+            return;
+        }
+        this.showDoneIcon = showDoneIcon;
+        requestUpdate(UPDATE_DRAW);
+    }
+
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        /* no-op */
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        setCurrentStep(position);
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        /* no-op */
+    }
+
+    @Override
+    public void onRestoreInstanceState(Parcelable state) {
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        // Try to restore the current step
+        currentStep = savedState.mCurrentStep;
+        if (savedState.mTransitionFromStep != STEP_INVALID && savedState.mTransitionFromStep <= stepCount &&
+                savedState.mCurrentStep <= stepCount) {
+            // Finish the transition that was running, instead of replaying it or jumping to its end
+            resumeStepTransition(savedState.mTransitionFromStep, savedState.mCurrentStep,
+                                 savedState.mTransitionPlayTime);
+        }
+        if (savedState.mStepStates != null) {
+            final StepStates states = StepStates.decode(savedState.mStepStates);
+            if (states.getStepCount() == stepCount) {
+                resetStepStates();
+                stepStates = states;
+            }
+        }
+        // Taken right away, so that the layouts are never left behind if this view is not laid out with labels
+        final String retainKey = getRetainKey();
+        if (retainKey != null) {
+            labelLayouts.takeRetained(retainKey);
+        }
+        requestLayout();
+    }
+
+    @Override
+    public Parcelable onSaveInstanceState() {
+        Parcelable superState = super.onSaveInstanceState();
+        SavedState savedState = new SavedState(superState);
+        // Store current stop so that it can be resumed when restored
+        savedState.mCurrentStep = currentStep;
+        savedState.mTransitionFromStep = STEP_INVALID;
+        if (isTransitionRunning() && transitionToStep == currentStep) {
+            savedState.mTransitionFromStep = transitionFromStep;
+            savedState.mTransitionPlayTime = AnimationUtils.currentAnimationTimeMillis() - transitionStartTime;
+        }
+        // Labels are not saved, they are provided again by the app
+        savedState.mStepStates = stepStates != null ? stepStates.encode() : null;
+
+        // The recreated view picks up the label layouts if it gets the same width
+        final String retainKey = getRetainKey();
+        if (retainKey != null && isChangingConfigurations()) {
+            labelLayouts.retain(retainKey);
+        }
+        return savedState;
+    }
+
+    /**
+     * The key must be the same for the view saving its state and the recreated view restoring it, so it doesn't
+     * depend on the configuration: the retained layouts are only reused if they match the new width, text size and
+     * labels.
+     *
+     * @return the key of the label layouts retained across a configuration change, {@code null} if the view has no
+     * id to be matched with the recreated view
+     */
+    @Nullable
+    private String getRetainKey() {
+        if (getId() == NO_ID) {
+            return null;
+        }
+        return String.valueOf(getId());
+    }
+
+    /**
+     * @return {@code true} if the activity of the view is being destroyed to be recreated with a new configuration
+     */
+    private boolean isChangingConfigurations() {
+        Context context = getContext();
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return ((Activity) context).isChangingConfigurations();
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return false;
+    }
+
+    /**
+     * Renderer drawing the widget to a {@link Canvas}, with the widget paints, labels and icon.
+     */
+    private final class CanvasRenderer extends PrimitiveStepperRenderer {
+
+        /**
+         * Canvas to draw to, only set during {@link #onDraw(Canvas)}
+         */
+        Canvas canvas;
+        /**
+         * Cached text of the step numbers, to avoid creating them on each frame
+         */
+        private String[] stepNumbers = new String[0];
+        private String getStepNumber(int step) {
+            if (stepNumbers.length != stepCount) {
+                stepNumbers = new String[stepCount];
+            }
+            if (stepNumbers[step] == null) {
+                stepNumbers[step] = String.valueOf(step + 1);
+            }
+            return stepNumbers[step];
+        }
+
+        /**
+         * Create and measure the text of the numbers of the given steps, before they are first drawn.
+         *
+         * @param firstStep first step position (inclusive)
+         * @param lastStep  last step position (inclusive)
+         */
+        void prewarmStepNumbers(int firstStep, int lastStep) {
+            for (int step = firstStep; step <= lastStep; step++) {
+                final String stepLabel = getStepNumber(step);
+                getStepTextNumberPaint(step).measureText(stepLabel, 0, stepLabel.length());
+            }
+        }
+
+        /**
+         * Bounds of the progress arc being drawn
+         */
+        private final RectF arcOval = new RectF();
+
+        @Override
+        protected void drawArc(int step, float cx, float cy, float radius, float fraction, int paint) {
+            arcOval.set(cx - radius, cy - radius, cx + radius, cy + radius);
+            canvas.drawArc(arcOval, -90f, 360f * fraction, false, resolvePaint(step, paint));
+        }
+
+        @Override
+        protected void drawCircle(int step, float cx, float cy, float radius, int paint) {
+            canvas.drawCircle(cx, cy, radius, resolvePaint(step, paint));
+        }
+
+        @Override
+        protected void drawRect(int step, float left, float top, float right, float bottom, int paint) {
+            canvas.drawRect(left, top, right, bottom, resolvePaint(step, paint));
+        }
+
+        @Override
+        protected void drawLine(int step, float startX, float startY, float stopX, float stopY, int paint) {
+            canvas.drawLine(startX, startY, stopX, stopY, resolvePaint(step, paint));
+        }
+
+        @Override
+        protected void drawStepLine(int line, float startX, float y, float stopX, int paint) {
+            // Paths are used (rather than lines) for the path effect of the animated line
+            canvas.drawPath(linePathList.get(line), resolvePaint(line, paint));
+        }
+
+        @Override
+        protected void drawStepNumber(int step, float cx, float cy) {
+            final String stepLabel = getStepNumber(step);
+
+            stepAreaRect.set((int) (cx - circleRadius), (int) (cy - circleRadius),
+                             (int) (cx + circleRadius), (int) (cy + circleRadius));
+            stepAreaRectF.set(stepAreaRect);
+
+            Paint stepTextNumberPaint = getStepTextNumberPaint(step);
 
-        this.pager = pager;
-        this.stepCount = stepCount;
-        currentStep = 0;
-        pager.addOnPageChangeListener(this);
+            // measure text width
+            stepAreaRectF.right = stepTextNumberPaint.measureText(stepLabel, 0, stepLabel.length());
+            // measure text height
+            stepAreaRectF.bottom = stepTextNumberPaint.descent() - stepTextNumberPaint.ascent();
 
-        if (showLabels && labels == null) {
-            setLabelsUsingPageTitles();
+            stepAreaRectF.left += (stepAreaRect.width() - stepAreaRectF.right) / 2.0f;
+            stepAreaRectF.top += (stepAreaRect.height() - stepAreaRectF.bottom) / 2.0f;
+
+            canvas.drawText(stepLabel, stepAreaRectF.left, stepAreaRectF.top - stepTextNumberPaint.ascent(),
+                            stepTextNumberPaint);
         }
 
-        requestLayout();
-        invalidate();
-    }
+        @Override
+        protected void drawLabel(int step, float x, float top) {
+            final StaticLayout layout = labelLayouts.get(step);
+            if (layout != null) {
+                drawLayout(layout, x, top, canvas, labelPaint);
+            }
+        }
 
-    private void setLabelsUsingPageTitles() {
-        PagerAdapter pagerAdapter = pager.getAdapter();
-        int pagerCount = pagerAdapter.getCount();
-        labels = new CharSequence[pagerCount];
-        for (int i = 0; i < pagerCount; i++) {
-            labels[i] = pagerAdapter.getPageTitle(i);
+        @Override
+        protected void drawDoneIcon(int step, float cx, float cy) {
+            canvas.save();
+            canvas.translate(cx - (doneIcon.getIntrinsicWidth() / 2), cy - (doneIcon.getIntrinsicHeight() / 2));
+            doneIcon.draw(canvas);
+            canvas.restore();
+        }
+
+        /**
+         * @param step  step position
+         * @param paint {@code PAINT_*} identifier
+         * @return the {@link Paint} to use
+         */
+        private Paint resolvePaint(int step, int paint) {
+            switch (paint) {
+                case PAINT_CIRCLE:
+                    return getStepCirclePaint(step);
+                case PAINT_OPTIONAL_CIRCLE:
+                    optionalCirclePaint.setColor(getStepCirclePaint(step).getColor());
+                    return optionalCirclePaint;
+                case PAINT_INDICATOR:
+                    return getStepIndicatorPaint(step);
+                case PAINT_DEFAULT_INDICATOR:
+                    return indicatorPaint;
+                case PAINT_FAILED:
+                    return failedPaint;
+                case PAINT_PROGRESS:
+                    return progressPaint;
+                case PAINT_HIGHLIGHT:
+                    highlightPaint.setColor(getStepIndicatorPaint(step).getColor());
+                    highlightPaint.setAlpha(HIGHLIGHT_ALPHA);
+                    return highlightPaint;
+                case PAINT_LINE:
+                    return linePaint;
+                case PAINT_LINE_DONE:
+                    return lineDonePaint;
+                case PAINT_LINE_DONE_ANIMATED:
+                    return lineDoneAnimatedPaint;
+                case PAINT_SEGMENT + SEGMENT_FAILED:
+                    lowDetailPaint.setColor(failedPaint.getColor());
+                    return lowDetailPaint;
+                case PAINT_SEGMENT + SEGMENT_CURRENT:
+                    lowDetailPaint.setColor(indicatorPaint.getColor());
+                    return lowDetailPaint;
+                case PAINT_SEGMENT + SEGMENT_DONE:
+                    lowDetailPaint.setColor(lineDonePaint.getColor());
+                    return lowDetailPaint;
+                case PAINT_SEGMENT + SEGMENT_SKIPPED:
+                case PAINT_SEGMENT + SEGMENT_PENDING:
+                    lowDetailPaint.setColor(linePaint.getColor());
+                    return lowDetailPaint;
+                default:
+                    throw new IllegalArgumentException("Unknown paint " + paint);
+            }
         }
     }
 
     /**
-     * Pass a labels array of Charsequence that is greater than or equal to the {@code stepCount}.
-     * Never pass {@code null} to this manually. Call {@code showLabels(false)} to hide labels.
-     *
-     * @param labelsArray Non-null array of CharSequence
+     * Exposes each step as a virtual view to the accessibility services, using the steps click areas as bounds.
+     * <p>
+     * The description of each step is cached until the step changes (current step, state, label), and only the
+     * changed steps are invalidated. With many steps, only the drawn ones are exposed.
+     * </p>
      */
-    public void setLabels(CharSequence[] labelsArray) {
-        if (labelsArray == null) {
-            labels = null;
-            return;
+    private final class StepAccessibilityHelper extends ExploreByTouchHelper {
+
+        private CharSequence[] stepDescriptions = new CharSequence[0];
+        private final Rect stepBounds = new Rect();
+
+        StepAccessibilityHelper() {
+            super(StepperIndicator.this);
         }
-        if (stepCount > labelsArray.length) {
-            throw new IllegalArgumentException(
-                    "Invalid number of labels for the indicators. Please provide a list " +
-                            "of labels with at least as many items as the number of steps required!");
+
+        /**
+         * Drop the description of every step, when the steps changed.
+         */
+        void invalidateSteps() {
+            if (stepDescriptions.length != stepCount) {
+                stepDescriptions = new CharSequence[Math.max(stepCount, 0)];
+            } else {
+                Arrays.fill(stepDescriptions, null);
+            }
+            invalidateRoot();
         }
-        labels = labelsArray;
-        showLabels(true);
-    }
 
-    public void setLabelColor(int color) {
-        labelPaint.setColor(color);
-        requestLayout();
-        invalidate();
+        /**
+         * Report the new bounds of the steps, when the steps moved. The descriptions are kept.
+         */
+        void invalidateBounds() {
+            invalidateRoot();
+        }
+
+        /**
+         * Drop the description of the step if it was created before its label was laid out.
+         *
+         * @param step step position
+         */
+        void onLabelLaidOut(int step) {
+            if (step < stepDescriptions.length && stepDescriptions[step] != null) {
+                invalidateStep(step);
+            }
+        }
+
+        /**
+         * Drop the description of the step, when its state or label changed.
+         *
+         * @param step step position
+         */
+        void invalidateStep(int step) {
+            if (step >= 0 && step < stepDescriptions.length) {
+                stepDescriptions[step] = null;
+                invalidateVirtualView(step);
+            }
+        }
+
+        /**
+         * Invalidate the steps between the previous and the new current step, the only ones whose displayed state
+         * changed, and announce the new current step.
+         */
+        void onStepChanged(int previousStep, int currentStep) {
+            final int last = Math.min(Math.max(previousStep, currentStep), stepDescriptions.length - 1);
+            for (int step = Math.max(Math.min(previousStep, currentStep), 0); step <= last; step++) {
+                invalidateStep(step);
+            }
+            if (currentStep < stepDescriptions.length) {
+                sendEventForVirtualView(currentStep, AccessibilityEvent.TYPE_VIEW_SELECTED);
+            }
+        }
+
+        private CharSequence getStepDescription(int step) {
+            if (step >= stepDescriptions.length) {
+                // Steps added since the last computation
+                stepDescriptions = Arrays.copyOf(stepDescriptions, stepCount);
+            }
+            CharSequence description = stepDescriptions[step];
+            if (description != null) {
+                return description;
+            }
+
+            final Resources resources = getResources();
+            final StringBuilder builder = new StringBuilder();
+            final StaticLayout label = showLabels ? labelLayouts.get(step) : null;
+            if (label != null) {
+                builder.append(label.getText()).append(", ");
+            }
+            builder.append(resources.getString(R.string.stpi_step_description, step + 1, stepCount));
+
+            final int state = getStepState(step);
+            final int stateDescription;
+            if (state == StepStates.STATE_FAILED) {
+                stateDescription = R.string.stpi_step_failed;
+            } else if (state == StepStates.STATE_SKIPPED) {
+                stateDescription = R.string.stpi_step_skipped;
+            } else if (step == currentStep) {
+                stateDescription = R.string.stpi_step_current;
+            } else if (state == StepStates.STATE_DONE || step < currentStep) {
+                stateDescription = R.string.stpi_step_done;
+            } else {
+                stateDescription = R.string.stpi_step_pending;
+            }
+            builder.append(", ").append(resources.getString(stateDescription));
+            if (stepStates != null && stepStates.isOptional(step)) {
+                builder.append(", ").append(resources.getString(R.string.stpi_step_optional));
+            }
+
+            description = builder.toString();
+            stepDescriptions[step] = description;
+            return description;
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            ensureGeometry();
+            if (geometry.lowDetail) {
+                return INVALID_ID;
+            }
+            final int step = getClickedStep(x, y);
+            return step == STEP_INVALID ? INVALID_ID : step;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            ensureGeometry();
+            if (geometry.lowDetail) {
+                // Steps are not drawn individually
+                return;
+            }
+            final int lastStep = lastDrawnStep == STEP_INVALID ? stepCount - 1
+                    : Math.min(lastDrawnStep, stepCount - 1);
+            for (int step = firstDrawnStep; step <= lastStep; step++) {
+                virtualViewIds.add(step);
+            }
+        }
+
+        @Override
+        protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+            event.setContentDescription(getStepDescription(virtualViewId));
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+            ensureGeometry();
+            node.setContentDescription(getStepDescription(virtualViewId));
+            node.setSelected(virtualViewId == currentStep);
+            getStepClickArea(virtualViewId).roundOut(stepBounds);
+            node.setBoundsInParent(stepBounds);
+            if (isOnStepClickListenerAvailable()) {
+                node.setClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            }
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, @Nullable Bundle arguments) {
+            if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && isOnStepClickListenerAvailable()) {
+                dispatchStepClicked(virtualViewId);
+                sendEventForVirtualView(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+                return true;
+            }
+            return false;
+        }
     }
 
     /**
-     * Shows the labels if true is passed. Else hides them.
-     *
-     * @param show Boolean to show or hide the labels
+     * Contract used by the StepperIndicator widget to notify any listener of steps interaction events.
      */
-    public void showLabels(boolean show) {
-        showLabels = show;
-        requestLayout();
-        invalidate();
+    public interface OnStepClickListener {
+
+        /**
+         * Step was clicked
+         *
+         * @param step The step position which was clicked. (starts from 0, as the ViewPager bound to the widget)
+         */
+        void onStepClicked(int step);
     }
 
     /**
-     * Add the {@link OnStepClickListener} to the list of listeners which will receive events when an step is clicked.
+     * Contract used by the StepperIndicator widget to notify any listener of the steps scrubbed by dragging the finger
+     * across the widget.
+     * <p>
+     * Only the changes of step are reported, not each touch event. When the finger moves fast, steps in between may be
+     * skipped.
+     * </p>
      *
-     * @param listener The {@link OnStepClickListener} which will be added
+     * @see #addOnStepScrubListener(OnStepScrubListener)
      */
-    public void addOnStepClickListener(OnStepClickListener listener) {
-        onStepClickListeners.add(listener);
+    public interface OnStepScrubListener {
+
+        /**
+         * Scrubbing started, the finger moved horizontally after pressing the widget
+         *
+         * @param step The step position under the finger
+         */
+        void onScrubStarted(int step);
+
+        /**
+         * The finger moved to another step
+         *
+         * @param previousStep The step position previously under the finger
+         * @param step         The step position now under the finger
+         */
+        void onScrubStepChanged(int previousStep, int step);
+
+        /**
+         * Scrubbing ended
+         *
+         * @param step      The step position under the finger when it ended
+         * @param cancelled {@code true} if the gesture was cancelled, {@code false} if the finger went up
+         */
+        void onScrubEnded(int step, boolean cancelled);
     }
 
     /**
-     * Remove the specified {@link OnStepClickListener} from the list of listeners which will receive events when an
-     * step is clicked.
+     * Provides the labels of the steps, only requested for the steps being drawn.
      *
-     * @param listener The {@link OnStepClickListener} which will be removed
+     * @see #setLabelProvider(LabelProvider)
      */
-    @SuppressWarnings("unused")
-    public void removeOnStepClickListener(OnStepClickListener listener) {
-        onStepClickListeners.remove(listener);
+    public interface LabelProvider {
+
+        /**
+         * @param step step position
+         * @return the label of the step, or {@code null} for no label
+         */
+        @Nullable
+        CharSequence getLabel(int step);
     }
 
     /**
-     * Remove all {@link OnStepClickListener} listeners from the StepperIndicator widget.
-     * No more events will be propagated.
+     * Animators of a transition between adjacent steps. The values of the check mark and indicator animators depend
+     * on the radii, they are set before each transition.
      */
-    @SuppressWarnings("unused")
-    public void clearOnStepClickListeners() {
-        onStepClickListeners.clear();
+    private static final class TransitionAnimators {
+
+        final AnimatorSet set = new AnimatorSet();
+        final ObjectAnimator line, indicator, check;
+
+        TransitionAnimators(StepperIndicator target, boolean forward) {
+            if (forward) {
+                line = ObjectAnimator.ofFloat(target, "animProgress", 1.0f, 0.0f);
+                check = ObjectAnimator.ofFloat(target, "animCheckRadius", 0f, 0f, 0f);
+                indicator = ObjectAnimator.ofFloat(target, "animIndicatorRadius", 0f, 0f, 0f);
+                set.play(line).with(check).before(indicator);
+            } else {
+                indicator = ObjectAnimator.ofFloat(target, "animIndicatorRadius", 0f, 0f);
+                line = ObjectAnimator.ofFloat(target, "animProgress", 0.0f, 1.0f);
+                check = ObjectAnimator.ofFloat(target, "animCheckRadius", 0f, 0f);
+                set.playSequentially(indicator, line, check);
+            }
+            line.setInterpolator(LINE_INTERPOLATOR);
+            check.setInterpolator(RADIUS_INTERPOLATOR);
+            indicator.setInterpolator(RADIUS_INTERPOLATOR);
+        }
     }
 
     /**
-     * Check if the widget has any valid {@link OnStepClickListener} listener set for receiving events from the steps.
-     *
-     * @return {@code true} if there are listeners registered, {@code false} otherwise.
+     * {@link LabelProvider} backed by an array, set via {@link #setLabels(CharSequence[])}.
      */
-    public boolean isOnStepClickListenerAvailable() {
-        return null != onStepClickListeners && !onStepClickListeners.isEmpty();
-    }
+    private static final class ArrayLabelProvider implements LabelProvider {
 
-    public void setDoneIcon(@Nullable Drawable doneIcon) {
-        this.doneIcon = doneIcon;
-        if (doneIcon != null) {
-            showDoneIcon = true;
-            int size = getContext().getResources().getDimensionPixelSize(R.dimen.stpi_done_icon_size);
-            doneIcon.setBounds(0, 0, size, size);
+        final CharSequence[] labels;
+
+        ArrayLabelProvider(CharSequence[] labels) {
+            this.labels = labels;
         }
-        invalidate();
-    }
 
-    public void setShowDoneIcon(boolean showDoneIcon) {
-        this.showDoneIcon = showDoneIcon;
-        invalidate();
+        @Override
+        public CharSequence getLabel(int step) {
+            return step < labels.length ? labels[step] : null;
+        }
     }
 
-    @Override
-    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
-        /* no-op */
-    }
+    /**
+     * {@link LabelProvider} using the page titles of a {@link PagerAdapter}, observing the adapter to refresh the
+     * labels.
+     */
+    private final class PagerLabelProvider extends DataSetObserver implements LabelProvider {
 
-    @Override
-    public void onPageSelected(int position) {
-        setCurrentStep(position);
-    }
+        private final PagerAdapter adapter;
+        private boolean registered;
 
-    @Override
-    public void onPageScrollStateChanged(int state) {
-        /* no-op */
-    }
+        PagerLabelProvider(PagerAdapter adapter) {
+            this.adapter = adapter;
+        }
 
-    @Override
-    public void onRestoreInstanceState(Parcelable state) {
-        SavedState savedState = (SavedState) state;
-        super.onRestoreInstanceState(savedState.getSuperState());
-        // Try to restore the current step
-        currentStep = savedState.mCurrentStep;
-        requestLayout();
+        void register() {
+            if (!registered) {
+                registered = true;
+                adapter.registerDataSetObserver(this);
+            }
+        }
+
+        void unregister() {
+            if (registered) {
+                registered = false;
+                adapter.unregisterDataSetObserver(this);
+            }
+        }
+
+        @Override
+        public CharSequence getLabel(int step) {
+            return step < adapter.getCount() ? adapter.getPageTitle(step) : null;
+        }
+
+        @Override
+        public void onChanged() {
+            notifyLabelsChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            notifyLabelsChanged();
+        }
     }
 
-    @Override
-    public Parcelable onSaveInstanceState() {
-        Parcelable superState = super.onSaveInstanceState();
-        SavedState savedState = new SavedState(superState);
-        // Store current stop so that it can be resumed when restored
-        savedState.mCurrentStep = currentStep;
-        return savedState;
+    /**
+     * Contract used by the StepperIndicator widget to report the adaptation of the animation quality.
+     *
+     * @see #setAdaptiveAnimationQuality(boolean)
+     */
+    public interface OnAnimationQualityChangeListener {
+
+        /**
+         * The animation quality was degraded or restored
+         *
+         * @param quality new quality, one of the {@code ANIMATION_QUALITY_*} values
+         */
+        void onAnimationQualityChanged(int quality);
     }
 
     /**
-     * Contract used by the StepperIndicator widget to notify any listener of steps interaction events.
+     * Contract used by the StepperIndicator widget to notify any listener of step changes and of the lifecycle of the
+     * transition animation between steps.
+     * <p>
+     * Use it to defer heavy work (like inflating the next page) until the transition ends.
+     * </p>
+     *
+     * @see SimpleOnStepChangeListener
      */
-    public interface OnStepClickListener {
+    public interface OnStepChangeListener {
 
         /**
-         * Step was clicked
+         * Current step changed. Called before the transition to the new step (if any) starts.
          *
-         * @param step The step position which was clicked. (starts from 0, as the ViewPager bound to the widget)
+         * @param previousStep The previous step position
+         * @param currentStep  The new step position
          */
-        void onStepClicked(int step);
+        void onStepChanged(int previousStep, int currentStep);
+
+        /**
+         * Transition animation between two steps started.
+         *
+         * @param fromStep The step position the transition starts from
+         * @param toStep   The step position the transition goes to
+         */
+        void onTransitionStart(int fromStep, int toStep);
+
+        /**
+         * Transition animation between two steps ended normally.
+         *
+         * @param fromStep The step position the transition started from
+         * @param toStep   The step position the transition went to
+         */
+        void onTransitionEnd(int fromStep, int toStep);
+
+        /**
+         * Transition animation between two steps was cancelled, usually because another step was set.
+         *
+         * @param fromStep The step position the transition started from
+         * @param toStep   The step position the transition was going to
+         */
+        void onTransitionCancel(int fromStep, int toStep);
+    }
+
+    /**
+     * Convenience {@link OnStepChangeListener} with empty implementations, extend it to only override the needed
+     * callbacks.
+     */
+    public static class SimpleOnStepChangeListener implements OnStepChangeListener {
+
+        @Override
+        public void onStepChanged(int previousStep, int currentStep) {
+        }
+
+        @Override
+        public void onTransitionStart(int fromStep, int toStep) {
+        }
+
+        @Override
+        public void onTransitionEnd(int fromStep, int toStep) {
+        }
+
+        @Override
+        public void onTransitionCancel(int fromStep, int toStep) {
+        }
     }
 
     /**
-     * Saved state in which information about the state of the widget is stored.
+     * State of the widget saved in the instance state: the current step, the running transition and the step states.
      * <p>
-     * Use this whenever you want to store or restore some information about the state of the widget.
+     * The step states are encoded with {@link StepStates#encode()}, taking at most half a byte per step (see
+     * {@link StepStates#getMaxEncodedSize(int)}): the state of 10,000 steps stays under 5 KB, far from the binder
+     * transaction limit. The labels are not saved.
      * </p>
      */
     private static class SavedState extends BaseSavedState {
@@ -1431,6 +3892,12 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
             }
         };
         private int mCurrentStep;
+        /**
+         * Step the running transition went from, {@link #STEP_INVALID} if no transition was running
+         */
+        private int mTransitionFromStep = STEP_INVALID;
+        private long mTransitionPlayTime;
+        private byte[] mStepStates;
 
         public SavedState(Parcelable superState) {
             super(superState);
@@ -1439,12 +3906,18 @@ public class StepperIndicator extends View implements ViewPager.OnPageChangeList
         private SavedState(Parcel in) {
             super(in);
             mCurrentStep = in.readInt();
+            mTransitionFromStep = in.readInt();
+            mTransitionPlayTime = in.readLong();
+            mStepStates = in.createByteArray();
         }
 
         @Override
         public void writeToParcel(Parcel dest, int flags) {
             super.writeToParcel(dest, flags);
             dest.writeInt(mCurrentStep);
+            dest.writeInt(mTransitionFromStep);
+            dest.writeLong(mTransitionPlayTime);
+            dest.writeByteArray(mStepStates);
         }
     }
 }
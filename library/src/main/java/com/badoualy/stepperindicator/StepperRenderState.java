@@ -0,0 +1,90 @@
+package com.badoualy.stepperindicator;
+
+import java.util.BitSet;
+
+/**
+ * Snapshot of the state of a {@link StepperIndicator} needed to render a frame: steps, running transition and
+ * display options. Filled by the view before each render, the same instance is reused for every frame.
+ */
+final class StepperRenderState {
+
+    int currentStep;
+    int previousStep;
+
+    /**
+     * Step under the finger while scrubbing, {@code -1} if none
+     */
+    int highlightedStep = -1;
+
+    // Range of steps to draw, the others are not visible
+    int firstStep = 0;
+    int lastStep = Integer.MAX_VALUE;
+
+    // Running transition
+    boolean inAnimation;
+    boolean inLineAnimation;
+    boolean inIndicatorAnimation;
+    boolean inCheckAnimation;
+    float animIndicatorRadius;
+    float animCheckRadius;
+    float animStateProgress = 1f;
+
+    /**
+     * Per-step states, {@code null} if none were submitted
+     */
+    StepStates stepStates;
+    /**
+     * Steps animated with {@link #animStateProgress}
+     */
+    BitSet stateChangedSteps;
+    /**
+     * Progress of each step, {@code null} if no progress was set
+     */
+    float[] stepProgress;
+
+    // Display options
+    boolean showStepTextNumber;
+    boolean showLabels;
+    boolean showDoneIcon;
+    boolean useBottomIndicator;
+    boolean useBottomIndicatorWithStepColors;
+
+    // Dimensions
+    float circleRadius;
+    float checkRadius;
+    float indicatorRadius;
+    float bottomIndicatorWidth;
+    float bottomIndicatorHeight;
+
+    /**
+     * @param step step position
+     * @return the state of the step, one of the {@code StepStates.STATE_*} values
+     */
+    int getStepState(int step) {
+        return stepStates == null ? StepStates.STATE_DEFAULT : stepStates.getState(step);
+    }
+
+    /**
+     * @param step step position
+     * @return {@code true} if the step is flagged as optional
+     */
+    boolean isStepOptional(int step) {
+        return stepStates != null && stepStates.isOptional(step);
+    }
+
+    /**
+     * @param step step position
+     * @return progress of the step, from 0 (no progress ring) to 1
+     */
+    float getStepProgress(int step) {
+        return stepProgress == null ? 0f : stepProgress[step];
+    }
+
+    /**
+     * @param step step position
+     * @return progress of the state change animation of the step, {@code 1} if the step is not animated
+     */
+    float getStateProgress(int step) {
+        return stateChangedSteps != null && stateChangedSteps.get(step) ? animStateProgress : 1f;
+    }
+}
@@ -0,0 +1,21 @@
+package com.badoualy.stepperindicator;
+
+/**
+ * Render pass of a {@link StepperIndicator}: draws a frame from a resolved geometry and a state snapshot.
+ * <p>
+ * Implementations only depend on the given snapshots, not on the view, so they can be run and measured outside of
+ * the view (see {@link RecordingStepperRenderer}).
+ * </p>
+ *
+ * @see PrimitiveStepperRenderer
+ */
+interface StepperRenderer {
+
+    /**
+     * Render a frame.
+     *
+     * @param geometry positions of the steps
+     * @param state    state to render
+     */
+    void render(StepperGeometry geometry, StepperRenderState state);
+}
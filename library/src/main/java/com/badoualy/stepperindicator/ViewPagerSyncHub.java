@@ -0,0 +1,132 @@
+package com.badoualy.stepperindicator;
+
+import android.support.annotation.UiThread;
+import android.support.v4.view.ViewPager;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Single {@link ViewPager.OnPageChangeListener} of a {@link ViewPager}, dispatching its page events to every
+ * {@link StepperIndicator} attached to it.
+ * <p>
+ * The pager only references the hub, which only weakly references the indicators: an indicator is never kept alive
+ * by a pager. Indicators are attached while they are attached to the window, so a detached indicator does not
+ * receive the events. The indicators are stored in an array replaced on each change, the events are dispatched
+ * without allocation.
+ * </p>
+ */
+@UiThread
+final class ViewPagerSyncHub implements ViewPager.OnPageChangeListener {
+
+    /**
+     * Hub of each pager, dropped with the pager
+     */
+    private static final WeakHashMap<ViewPager, ViewPagerSyncHub> hubs = new WeakHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private static final WeakReference<StepperIndicator>[] NO_INDICATORS = new WeakReference[0];
+
+    private WeakReference<StepperIndicator>[] indicators = NO_INDICATORS;
+
+    private ViewPagerSyncHub() {
+    }
+
+    /**
+     * Dispatch the page events of the pager to the indicator.
+     *
+     * @param pager     pager to listen to
+     * @param indicator indicator receiving the events
+     */
+    static void attach(ViewPager pager, StepperIndicator indicator) {
+        ViewPagerSyncHub hub = hubs.get(pager);
+        if (hub == null) {
+            hub = new ViewPagerSyncHub();
+            hubs.put(pager, hub);
+            pager.addOnPageChangeListener(hub);
+        }
+        hub.update(indicator, true);
+    }
+
+    /**
+     * Stop dispatching the page events of the pager to the indicator. The hub stops listening to the pager once no
+     * indicator is attached anymore.
+     *
+     * @param pager     pager listened to
+     * @param indicator indicator receiving the events
+     */
+    static void detach(ViewPager pager, StepperIndicator indicator) {
+        final ViewPagerSyncHub hub = hubs.get(pager);
+        if (hub == null) {
+            return;
+        }
+        hub.update(indicator, false);
+        if (hub.indicators.length == 0) {
+            pager.removeOnPageChangeListener(hub);
+            hubs.remove(pager);
+        }
+    }
+
+    /**
+     * Replace the indicators with a new array, with or without the given indicator, and without the collected ones.
+     * The array being dispatched to is left unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    private void update(StepperIndicator indicator, boolean add) {
+        final WeakReference<StepperIndicator>[] updated = new WeakReference[indicators.length + (add ? 1 : 0)];
+        int count = 0;
+        for (WeakReference<StepperIndicator> reference : indicators) {
+            final StepperIndicator current = reference.get();
+            if (current != null && current != indicator) {
+                updated[count++] = reference;
+            }
+        }
+        if (add) {
+            updated[count++] = new WeakReference<>(indicator);
+        }
+        indicators = count == updated.length ? updated : copyOf(updated, count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WeakReference<StepperIndicator>[] copyOf(WeakReference<StepperIndicator>[] array, int length) {
+        if (length == 0) {
+            return NO_INDICATORS;
+        }
+        final WeakReference<StepperIndicator>[] copy = new WeakReference[length];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        final WeakReference<StepperIndicator>[] indicators = this.indicators;
+        for (WeakReference<StepperIndicator> reference : indicators) {
+            final StepperIndicator indicator = reference.get();
+            if (indicator != null) {
+                indicator.onPageScrolled(position, positionOffset, positionOffsetPixels);
+            }
+        }
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        final WeakReference<StepperIndicator>[] indicators = this.indicators;
+        for (WeakReference<StepperIndicator> reference : indicators) {
+            final StepperIndicator indicator = reference.get();
+            if (indicator != null) {
+                indicator.onPageSelected(position);
+            }
+        }
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        final WeakReference<StepperIndicator>[] indicators = this.indicators;
+        for (WeakReference<StepperIndicator> reference : indicators) {
+            final StepperIndicator indicator = reference.get();
+            if (indicator != null) {
+                indicator.onPageScrollStateChanged(state);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.badoualy.stepperindicator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round-trip tests of the {@link StepStates} encoding saved in the instance state.
+ */
+public class StepStatesTest {
+
+    private static final int STEP_COUNT = 10000;
+    /**
+     * Size budget of the encoded states of {@link #STEP_COUNT} steps, in bytes
+     */
+    private static final int MAX_ENCODED_SIZE = 5 * 1024;
+
+    @Test
+    public void roundTripEmpty() {
+        assertRoundTrip(new StepStates(0));
+    }
+
+    @Test
+    public void roundTripTimeline() {
+        // Done steps, a few failed, skipped and optional ones, then pending steps
+        StepStates states = new StepStates(STEP_COUNT);
+        for (int i = 0; i < 6000; i++) {
+            states.setState(i, StepStates.STATE_DONE);
+        }
+        states.setState(1200, StepStates.STATE_FAILED);
+        for (int i = 3000; i < 3100; i++) {
+            states.setState(i, StepStates.STATE_SKIPPED);
+        }
+        states.setOptional(7000, true);
+
+        final byte[] data = assertRoundTrip(states);
+        // Stored as runs
+        assertTrue("Encoded in " + data.length + " bytes", data.length < 32);
+    }
+
+    @Test
+    public void roundTripRandom() {
+        // Worst case for the runs, stored as packed steps
+        StepStates states = new StepStates(STEP_COUNT);
+        Random random = new Random(42);
+        for (int i = 0; i < STEP_COUNT; i++) {
+            states.setState(i, random.nextInt(4));
+            states.setOptional(i, random.nextBoolean());
+        }
+
+        final byte[] data = assertRoundTrip(states);
+        assertTrue("Encoded in " + data.length + " bytes", data.length <= MAX_ENCODED_SIZE);
+    }
+
+    @Test
+    public void roundTripAlternating() {
+        StepStates states = new StepStates(STEP_COUNT + 1);
+        for (int i = 0; i < states.getStepCount(); i += 2) {
+            states.setState(i, StepStates.STATE_FAILED);
+        }
+        assertRoundTrip(states);
+    }
+
+    @Test
+    public void decodeInvalid() {
+        final byte[] data = new StepStates(STEP_COUNT).encode();
+        assertInvalid(new byte[0]);
+        assertInvalid(new byte[]{7, 1, 0});
+        // Truncated
+        assertInvalid(Arrays.copyOf(data, data.length - 1));
+        // Runs longer than the step count
+        data[data.length - 1]++;
+        assertInvalid(data);
+    }
+
+    private static byte[] assertRoundTrip(StepStates states) {
+        final byte[] data = states.encode();
+        assertTrue(data.length <= StepStates.getMaxEncodedSize(states.getStepCount()));
+
+        final StepStates decoded = StepStates.decode(data);
+        assertEquals(states.getStepCount(), decoded.getStepCount());
+        for (int i = 0; i < states.getStepCount(); i++) {
+            assertEquals("Step " + i, states.get(i), decoded.get(i));
+        }
+        assertEquals(-1, decoded.nextModifiedStep(0));
+        return data;
+    }
+
+    private static void assertInvalid(byte[] data) {
+        try {
+            StepStates.decode(data);
+            fail("Decoded invalid step states");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
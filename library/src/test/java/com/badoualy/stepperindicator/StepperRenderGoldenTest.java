@@ -0,0 +1,275 @@
+package com.badoualy.stepperindicator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Golden tests of the render pass: each configuration is rendered with a {@link RecordingStepperRenderer} and the
+ * recorded draw operations are compared to the golden file {@code golden/<name>.txt} of the test resources.
+ * <p>
+ * To update the golden files after an intended rendering change, run the tests with
+ * {@code -Dstpi.updateGoldens=true} and review the diff.
+ * </p>
+ */
+public class StepperRenderGoldenTest {
+
+    private static final boolean UPDATE_GOLDENS = Boolean.getBoolean("stpi.updateGoldens");
+    private static final File GOLDEN_DIR = new File("src/test/resources/golden");
+
+    private static final float WIDTH = 480f;
+    private static final float HEIGHT = 96f;
+    private static final float CIRCLE_RADIUS = 10f;
+    private static final float CIRCLE_STROKE_WIDTH = 2f;
+    private static final float LINE_MARGIN = 4f;
+    private static final float CENTER_Y = 22f;
+    private static final float LABEL_TOP = 44f;
+
+    private final StepperGeometry geometry = new StepperGeometry();
+    private final RecordingStepperRenderer renderer = new RecordingStepperRenderer();
+    private StepperRenderState state;
+
+    @Before
+    public void setUp() {
+        state = new StepperRenderState();
+        state.circleRadius = CIRCLE_RADIUS;
+        state.checkRadius = CIRCLE_RADIUS + CIRCLE_STROKE_WIDTH * 2;
+        state.indicatorRadius = CIRCLE_RADIUS * 0.4f;
+        state.animIndicatorRadius = state.indicatorRadius;
+        state.animCheckRadius = state.checkRadius;
+        state.bottomIndicatorWidth = 40f;
+        state.bottomIndicatorHeight = 4f;
+        state.showDoneIcon = true;
+    }
+
+    @Test
+    public void defaultSteps() throws IOException {
+        layout(5, WIDTH);
+        state.currentStep = state.previousStep = 2;
+        assertGolden("default_steps");
+    }
+
+    @Test
+    public void firstStep() throws IOException {
+        layout(5, WIDTH);
+        assertGolden("first_step");
+    }
+
+    @Test
+    public void labels() throws IOException {
+        layout(4, WIDTH);
+        state.currentStep = state.previousStep = 1;
+        state.showLabels = true;
+        assertGolden("labels");
+    }
+
+    @Test
+    public void stepNumbers() throws IOException {
+        layout(4, WIDTH);
+        state.currentStep = state.previousStep = 1;
+        state.showStepTextNumber = true;
+        state.showDoneIcon = false;
+        assertGolden("step_numbers");
+    }
+
+    @Test
+    public void bottomIndicator() throws IOException {
+        layout(4, WIDTH);
+        state.currentStep = state.previousStep = 2;
+        state.useBottomIndicator = true;
+        assertGolden("bottom_indicator");
+    }
+
+    @Test
+    public void bottomIndicatorWithStepColors() throws IOException {
+        layout(4, WIDTH);
+        state.currentStep = state.previousStep = 2;
+        state.useBottomIndicator = true;
+        state.useBottomIndicatorWithStepColors = true;
+        assertGolden("bottom_indicator_step_colors");
+    }
+
+    @Test
+    public void forwardTransitionMidAnimation() throws IOException {
+        layout(5, WIDTH);
+        state.previousStep = 1;
+        state.currentStep = 2;
+        state.inAnimation = true;
+        state.inLineAnimation = true;
+        state.inCheckAnimation = true;
+        state.animCheckRadius = state.checkRadius / 2f;
+        state.animIndicatorRadius = 0f;
+        assertGolden("forward_transition");
+    }
+
+    @Test
+    public void backwardTransitionMidAnimation() throws IOException {
+        layout(5, WIDTH);
+        state.previousStep = 3;
+        state.currentStep = 2;
+        state.inAnimation = true;
+        state.inIndicatorAnimation = true;
+        state.inCheckAnimation = true;
+        state.animCheckRadius = state.checkRadius / 2f;
+        state.animIndicatorRadius = state.indicatorRadius / 2f;
+        assertGolden("backward_transition");
+    }
+
+    @Test
+    public void stepStates() throws IOException {
+        layout(6, WIDTH);
+        state.currentStep = state.previousStep = 4;
+        StepStates states = new StepStates(6);
+        states.setState(0, StepStates.STATE_DONE);
+        states.setState(1, StepStates.STATE_FAILED);
+        states.setState(2, StepStates.STATE_SKIPPED);
+        states.setOptional(3, true);
+        states.setState(5, StepStates.STATE_DONE);
+        state.stepStates = states;
+        assertGolden("step_states");
+    }
+
+    @Test
+    public void stepStatesMidAnimation() throws IOException {
+        layout(4, WIDTH);
+        state.currentStep = state.previousStep = 3;
+        StepStates states = new StepStates(4);
+        states.setState(1, StepStates.STATE_FAILED);
+        states.setState(2, StepStates.STATE_SKIPPED);
+        state.stepStates = states;
+        state.stateChangedSteps = new BitSet(4);
+        state.stateChangedSteps.set(1);
+        state.stateChangedSteps.set(2);
+        state.animStateProgress = 0.5f;
+        assertGolden("step_states_animated");
+    }
+
+    @Test
+    public void scrubHighlight() throws IOException {
+        layout(5, WIDTH);
+        state.currentStep = state.previousStep = 1;
+        state.highlightedStep = 3;
+        assertGolden("scrub_highlight");
+    }
+
+    @Test
+    public void stepProgress() throws IOException {
+        layout(4, WIDTH);
+        state.currentStep = state.previousStep = 1;
+        state.stepProgress = new float[]{0f, 0.25f, 1f, 0f};
+        assertGolden("step_progress");
+    }
+
+    @Test
+    public void lowDetail() throws IOException {
+        final int stepCount = 1000;
+        layout(stepCount, 200f);
+        assertTrue(geometry.lowDetail);
+        state.currentStep = state.previousStep = 400;
+        StepStates states = new StepStates(stepCount);
+        states.setState(100, StepStates.STATE_FAILED);
+        for (int i = 500; i < 600; i++) {
+            states.setState(i, StepStates.STATE_SKIPPED);
+        }
+        state.stepStates = states;
+        assertGolden("low_detail");
+        // At most one rect per pixel column
+        assertTrue(renderer.getOpCount() <= 200);
+    }
+
+    @Test
+    public void lowDetailFollowsChanges() throws IOException {
+        final int stepCount = 1000;
+        layout(stepCount, 200f);
+        state.currentStep = state.previousStep = 400;
+        StepStates states = new StepStates(stepCount);
+        state.stepStates = states;
+        renderer.render(geometry, state);
+        final int opCount = renderer.getOpCount();
+
+        // Same segments as if rendered the first time after each change
+        states.setState(100, StepStates.STATE_FAILED);
+        for (int i = 500; i < 600; i++) {
+            states.setState(i, StepStates.STATE_SKIPPED);
+        }
+        assertGolden("low_detail");
+
+        state.currentStep = state.previousStep = 0;
+        states.clear();
+        renderer.render(geometry, state);
+        assertTrue(renderer.getOpCount() < opCount);
+    }
+
+    /**
+     * Number of draw operations of a frame: a few per drawn step, a few in total in low detail mode.
+     */
+    @Test
+    public void renderOpCount() {
+        assertOpCount(5, WIDTH, 14);
+        state.showLabels = true;
+        state.showStepTextNumber = true;
+        assertOpCount(50, 4000f, 250);
+        state.showLabels = false;
+        state.showStepTextNumber = false;
+        assertOpCount(10000, WIDTH, 3);
+    }
+
+    private void assertOpCount(int stepCount, float width, int expectedOpCount) {
+        layout(stepCount, width);
+        state.currentStep = state.previousStep = stepCount / 2;
+        renderer.render(geometry, state);
+        assertEquals(expectedOpCount, renderer.getOpCount());
+    }
+
+    private void layout(int stepCount, float width) {
+        geometry.compute(stepCount, width, HEIGHT, CIRCLE_RADIUS * 2f, CIRCLE_RADIUS * 2f + CIRCLE_STROKE_WIDTH,
+                         LINE_MARGIN, CENTER_Y, LABEL_TOP);
+    }
+
+    private void assertGolden(String name) throws IOException {
+        renderer.render(geometry, state);
+        StringBuilder out = new StringBuilder();
+        renderer.dump(out);
+        final String actual = out.toString();
+
+        final String fileName = "golden/" + name + ".txt";
+        if (UPDATE_GOLDENS) {
+            OutputStream os = new FileOutputStream(new File(GOLDEN_DIR, name + ".txt"));
+            try {
+                os.write(actual.getBytes("UTF-8"));
+            } finally {
+                os.close();
+            }
+            return;
+        }
+
+        InputStream is = getClass().getClassLoader().getResourceAsStream(fileName);
+        assertNotNull("Missing golden file " + fileName, is);
+        assertEquals("Render differs from " + fileName, readFully(is), actual);
+    }
+
+    private static String readFully(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+}
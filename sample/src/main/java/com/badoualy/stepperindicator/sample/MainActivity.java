@@ -1,9 +1,12 @@
 package com.badoualy.stepperindicator.sample;
 
+import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.view.ViewPager;
 import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
 
 import com.badoualy.stepperindicator.StepperIndicator;
 
@@ -30,4 +33,18 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_perf_lab) {
+            startActivity(new Intent(this, PerfLabActivity.class));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
 }
@@ -0,0 +1,251 @@
+package com.badoualy.stepperindicator.sample;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.SeekBar;
+import android.widget.TextView;
+
+/**
+ * Stress screen for the {@link com.badoualy.stepperindicator.StepperIndicator}: many indicators with a configurable
+ * number of steps, automated step changes and live frame, draw and allocation counters.
+ */
+public class PerfLabActivity extends AppCompatActivity {
+
+    private static final int MIN_STEP_COUNT = 2;
+    private static final int MAX_STEP_COUNT = 500;
+    private static final int DEFAULT_STEP_COUNT = 5;
+    private static final int MIN_INSTANCE_COUNT = 1;
+    private static final int MAX_INSTANCE_COUNT = 200;
+    private static final int DEFAULT_INSTANCE_COUNT = 20;
+
+    private static final long STEP_INTERVAL_MS = 600;
+    private static final long STATS_INTERVAL_MS = 1000;
+
+    private final Handler handler = new Handler();
+
+    private RecyclerView list;
+    private PerfLabAdapter adapter;
+    private TextView lblStats;
+
+    private FrameMonitor frameMonitor;
+    private long lastAllocatedBytes = -1;
+
+    private final Runnable advanceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            adapter.advance(list);
+            handler.postDelayed(this, STEP_INTERVAL_MS);
+        }
+    };
+
+    private final Runnable statsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateStats();
+            handler.postDelayed(this, STATS_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_perf_lab);
+
+        lblStats = findViewById(R.id.lbl_stats);
+        list = findViewById(R.id.list);
+        adapter = new PerfLabAdapter(DEFAULT_INSTANCE_COUNT, DEFAULT_STEP_COUNT);
+        list.setLayoutManager(new LinearLayoutManager(this));
+        list.setAdapter(adapter);
+
+        final TextView lblStepCount = findViewById(R.id.lbl_step_count);
+        final SeekBar seekStepCount = findViewById(R.id.seek_step_count);
+        seekStepCount.setMax(MAX_STEP_COUNT - MIN_STEP_COUNT);
+        seekStepCount.setProgress(DEFAULT_STEP_COUNT - MIN_STEP_COUNT);
+        lblStepCount.setText(getString(R.string.perf_lab_step_count, DEFAULT_STEP_COUNT));
+        seekStepCount.setOnSeekBarChangeListener(new SimpleOnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                lblStepCount.setText(getString(R.string.perf_lab_step_count, progress + MIN_STEP_COUNT));
+                adapter.setStepCount(progress + MIN_STEP_COUNT);
+            }
+        });
+
+        final TextView lblInstanceCount = findViewById(R.id.lbl_instance_count);
+        final SeekBar seekInstanceCount = findViewById(R.id.seek_instance_count);
+        seekInstanceCount.setMax(MAX_INSTANCE_COUNT - MIN_INSTANCE_COUNT);
+        seekInstanceCount.setProgress(DEFAULT_INSTANCE_COUNT - MIN_INSTANCE_COUNT);
+        lblInstanceCount.setText(getString(R.string.perf_lab_instance_count, DEFAULT_INSTANCE_COUNT));
+        seekInstanceCount.setOnSeekBarChangeListener(new SimpleOnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                lblInstanceCount.setText(getString(R.string.perf_lab_instance_count, progress + MIN_INSTANCE_COUNT));
+                adapter.setInstanceCount(progress + MIN_INSTANCE_COUNT);
+            }
+        });
+
+        final CheckBox chkLabels = findViewById(R.id.chk_labels);
+        chkLabels.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                adapter.setShowLabels(isChecked);
+            }
+        });
+        final CheckBox chkStepNumbers = findViewById(R.id.chk_step_numbers);
+        chkStepNumbers.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                adapter.setShowStepNumbers(isChecked);
+            }
+        });
+        final CheckBox chkBottomIndicator = findViewById(R.id.chk_bottom_indicator);
+        chkBottomIndicator.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                adapter.setUseBottomIndicator(isChecked);
+            }
+        });
+        final CheckBox chkAutoAdvance = findViewById(R.id.chk_auto_advance);
+        chkAutoAdvance.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                handler.removeCallbacks(advanceRunnable);
+                if (isChecked) {
+                    handler.postDelayed(advanceRunnable, STEP_INTERVAL_MS);
+                }
+            }
+        });
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            frameMonitor = new FrameMonitor();
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (frameMonitor != null) {
+            frameMonitor.start();
+        }
+        TimedStepperIndicator.resetCounters();
+        lastAllocatedBytes = -1;
+        handler.postDelayed(statsRunnable, STATS_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (frameMonitor != null) {
+            frameMonitor.stop();
+        }
+        handler.removeCallbacks(statsRunnable);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(advanceRunnable);
+    }
+
+    private void updateStats() {
+        float avgFrameMs = 0;
+        float maxFrameMs = 0;
+        int frameCount = 0;
+        if (frameMonitor != null) {
+            frameCount = frameMonitor.frameCount;
+            avgFrameMs = frameCount == 0 ? 0 : frameMonitor.totalFrameNs / frameCount / 1e6f;
+            maxFrameMs = frameMonitor.maxFrameNs / 1e6f;
+            frameMonitor.reset();
+        }
+
+        final long drawCount = TimedStepperIndicator.getDrawCount();
+        final long avgDrawUs = drawCount == 0 ? 0 : TimedStepperIndicator.getDrawTimeNs() / drawCount / 1000;
+        TimedStepperIndicator.resetCounters();
+
+        lblStats.setText(getString(R.string.perf_lab_stats, avgFrameMs, maxFrameMs, frameCount,
+                                   avgDrawUs, drawCount, getAllocationRate()));
+    }
+
+    /**
+     * @return the allocation rate since the last call, or "n/a" if not available on this device
+     */
+    private String getAllocationRate() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return getString(R.string.perf_lab_stats_unavailable);
+        }
+
+        final String stat = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        if (stat == null) {
+            return getString(R.string.perf_lab_stats_unavailable);
+        }
+
+        final long allocatedBytes = Long.parseLong(stat);
+        final long previous = lastAllocatedBytes;
+        lastAllocatedBytes = allocatedBytes;
+        if (previous < 0) {
+            return getString(R.string.perf_lab_stats_unavailable);
+        }
+        final long perSecond = (allocatedBytes - previous) * 1000 / STATS_INTERVAL_MS;
+        return getString(R.string.perf_lab_bytes_per_second, perSecond / 1024);
+    }
+
+    /**
+     * Records the interval between consecutive frames.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameMonitor implements Choreographer.FrameCallback {
+
+        private long lastFrameTimeNs;
+        private int frameCount;
+        private long totalFrameNs;
+        private long maxFrameNs;
+
+        void start() {
+            lastFrameTimeNs = 0;
+            reset();
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        void reset() {
+            frameCount = 0;
+            totalFrameNs = 0;
+            maxFrameNs = 0;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (lastFrameTimeNs != 0) {
+                final long frameNs = frameTimeNanos - lastFrameTimeNs;
+                frameCount++;
+                totalFrameNs += frameNs;
+                maxFrameNs = Math.max(maxFrameNs, frameNs);
+            }
+            lastFrameTimeNs = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private abstract static class SimpleOnSeekBarChangeListener implements SeekBar.OnSeekBarChangeListener {
+
+        @Override
+        public void onStartTrackingTouch(SeekBar seekBar) {
+        }
+
+        @Override
+        public void onStopTrackingTouch(SeekBar seekBar) {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.badoualy.stepperindicator.sample;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.badoualy.stepperindicator.StepperIndicator;
+
+/**
+ * Adapter displaying the same {@link StepperIndicator} configuration a given number of times.
+ */
+class PerfLabAdapter extends RecyclerView.Adapter<PerfLabAdapter.ViewHolder> {
+
+    private int instanceCount;
+    private int stepCount;
+    private int currentStep;
+    private boolean showLabels;
+    private boolean showStepNumbers;
+    private boolean useBottomIndicator;
+    private CharSequence[] labels;
+
+    PerfLabAdapter(int instanceCount, int stepCount) {
+        this.instanceCount = instanceCount;
+        setStepCount(stepCount);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.item_perf_lab, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        final StepperIndicator indicator = holder.indicator;
+        // Apply the whole configuration with a single layout and redraw
+        indicator.beginUpdate();
+        indicator.setStepCount(stepCount);
+        indicator.setLabels(labels);
+        indicator.showLabels(showLabels);
+        indicator.setShowStepNumberInstead(showStepNumbers);
+        indicator.setUseBottomIndicator(useBottomIndicator);
+        indicator.setCurrentStep(currentStep);
+        indicator.commitUpdate();
+    }
+
+    @Override
+    public int getItemCount() {
+        return instanceCount;
+    }
+
+    void setInstanceCount(int instanceCount) {
+        this.instanceCount = instanceCount;
+        notifyDataSetChanged();
+    }
+
+    void setStepCount(int stepCount) {
+        this.stepCount = stepCount;
+        currentStep = 0;
+        labels = new CharSequence[stepCount];
+        for (int i = 0; i < stepCount; i++) {
+            labels[i] = "Step " + (i + 1);
+        }
+        notifyDataSetChanged();
+    }
+
+    void setShowLabels(boolean showLabels) {
+        this.showLabels = showLabels;
+        notifyDataSetChanged();
+    }
+
+    void setShowStepNumbers(boolean showStepNumbers) {
+        this.showStepNumbers = showStepNumbers;
+        notifyDataSetChanged();
+    }
+
+    void setUseBottomIndicator(boolean useBottomIndicator) {
+        this.useBottomIndicator = useBottomIndicator;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Move all the indicators to the next step (looping back to the first one), animating the visible ones.
+     *
+     * @param list the {@link RecyclerView} displaying the indicators
+     */
+    void advance(RecyclerView list) {
+        currentStep = (currentStep + 1) % (stepCount + 1);
+        // Update the visible indicators directly, to get the transition animations instead of a rebind
+        for (int i = 0; i < list.getChildCount(); i++) {
+            final ViewHolder holder = (ViewHolder) list.getChildViewHolder(list.getChildAt(i));
+            holder.indicator.setCurrentStep(currentStep);
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        final StepperIndicator indicator;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            indicator = (StepperIndicator) itemView;
+        }
+    }
+}
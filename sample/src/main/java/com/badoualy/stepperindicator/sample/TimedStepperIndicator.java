@@ -0,0 +1,52 @@
+package com.badoualy.stepperindicator.sample;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+
+import com.badoualy.stepperindicator.StepperIndicator;
+
+/**
+ * {@link StepperIndicator} measuring the time spent in {@link #onDraw(Canvas)}, for the {@link PerfLabActivity}.
+ * <p>
+ * Counters are shared by all the instances, and only accessed from the UI thread.
+ * </p>
+ */
+public class TimedStepperIndicator extends StepperIndicator {
+
+    private static long drawCount;
+    private static long drawTimeNs;
+
+    public TimedStepperIndicator(Context context) {
+        super(context);
+    }
+
+    public TimedStepperIndicator(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public TimedStepperIndicator(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final long start = System.nanoTime();
+        super.onDraw(canvas);
+        drawTimeNs += System.nanoTime() - start;
+        drawCount++;
+    }
+
+    static long getDrawCount() {
+        return drawCount;
+    }
+
+    static long getDrawTimeNs() {
+        return drawTimeNs;
+    }
+
+    static void resetCounters() {
+        drawCount = 0;
+        drawTimeNs = 0;
+    }
+}